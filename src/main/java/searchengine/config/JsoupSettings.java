@@ -12,4 +12,5 @@ import org.springframework.stereotype.Component;
 public class JsoupSettings {
     private String userAgent;
     private String referrer;
+    private long delay = 500;
 }
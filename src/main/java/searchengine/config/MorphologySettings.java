@@ -0,0 +1,14 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "morphology-settings")
+public class MorphologySettings {
+    private int cacheSize = 100_000;
+}
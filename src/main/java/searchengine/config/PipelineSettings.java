@@ -0,0 +1,22 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "pipeline-settings")
+public class PipelineSettings {
+    private int fetchThreads = 16;
+    private int parseThreads = 2;
+    private int lemmatizeThreads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = 64;
+    private double bloomFalsePositiveRate = 0.001;
+    private int writerBatchSize = 100;
+    private long writerFlushInterval = 1_000;
+    private int gcChunkSize = 5_000;
+    private long checkpointInterval = 30_000;
+}
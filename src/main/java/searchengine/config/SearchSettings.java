@@ -0,0 +1,18 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    private int resultCacheSize = 1_000;
+    private long resultCacheTtl = 300_000;
+    private double stopLemmaShare = 0.3;
+    private int maxRankedPages = 1_000;
+    private int shardThreads = Runtime.getRuntime().availableProcessors();
+}
@@ -1,31 +1,57 @@
 package searchengine.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import searchengine.dto.statistics.CacheStatisticsResponse;
 import searchengine.dto.statistics.Response;
 import searchengine.dto.statistics.StatisticsResponse;
+import searchengine.dto.suggest.SuggestResponse;
 import searchengine.services.indexation.IndexationService;
 import searchengine.services.search.SearchService;
 import searchengine.services.statistics.StatisticsService;
+import searchengine.services.suggest.SuggestService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 
 @RestController
 @RequestMapping("/api")
 @RequiredArgsConstructor
 public class ApiController {
+    private static final MediaType NDJSON = MediaType
+            .parseMediaType("application/x-ndjson");
     private final StatisticsService statisticsService;
     private final IndexationService indexationService;
     private final SearchService searchService;
+    private final SuggestService suggestService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/statistics")
     public ResponseEntity<StatisticsResponse> statistics() {
         return ResponseEntity.ok(statisticsService.getStatistics());
     }
 
+    @GetMapping("/cacheStatistics")
+    public ResponseEntity<CacheStatisticsResponse> cacheStatistics() {
+        return ResponseEntity.ok(statisticsService.getCacheStatistics());
+    }
+
     @GetMapping("/startIndexing")
-    public Response startIndexing() {
+    public Response startIndexing(@RequestParam(defaultValue = "false")
+                                  boolean incremental) {
+        return indexationService
+                .startIndexingAndGetResponse(incremental);
+    }
+
+    @GetMapping("/resumeIndexing")
+    public Response resumeIndexing() {
         return indexationService
-                .startIndexingAndGetResponse();
+                .resumeIndexingAndGetResponse();
     }
 
     @GetMapping("/stopIndexing")
@@ -45,4 +71,35 @@ public class ApiController {
                                            Integer offset, Integer limit) {
         return searchService.searchAndGetResponse(query, site, offset, limit);
     }
+
+    /**
+     * Search as newline-delimited JSON: the first line is the response
+     * with the total count or the error, then one line per page as soon
+     * as its snippet is ready.
+     */
+    @GetMapping("/search/stream")
+    public ResponseEntity<StreamingResponseBody> searchStream(
+            String query, String site,
+            @RequestParam(defaultValue = "0") Integer offset,
+            @RequestParam(defaultValue = "20") Integer limit) {
+        StreamingResponseBody body = out -> searchService.searchAndStream(
+                query, site, offset, limit,
+                header -> writeLine(out, header), data -> writeLine(out, data));
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    @GetMapping("/suggest")
+    public SuggestResponse suggest(String query, Integer limit) {
+        return suggestService.suggestAndGetResponse(query, limit);
+    }
+
+    private void writeLine(OutputStream out, Object line) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(line));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,11 @@
+package searchengine.dto.indexation;
+
+public interface PageVersion {
+    String getPath();
+
+    String getEtag();
+
+    String getLastModified();
+
+    String getContentHash();
+}
@@ -0,0 +1,15 @@
+package searchengine.dto.search;
+
+public interface PageText {
+    int getId();
+
+    int getSiteId();
+
+    String getPath();
+
+    String getTitle();
+
+    String getText();
+
+    byte[] getTokenOffsets();
+}
@@ -0,0 +1,14 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+@Data
+public class CacheStatistics {
+    private String name;
+    private int size;
+    private int capacity;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private double hitRate;
+}
@@ -0,0 +1,11 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CacheStatisticsResponse {
+    private boolean result;
+    private List<CacheStatistics> caches;
+}
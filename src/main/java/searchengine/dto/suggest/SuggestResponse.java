@@ -0,0 +1,11 @@
+package searchengine.dto.suggest;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class SuggestResponse {
+    private boolean result;
+    private List<String> suggestions;
+}
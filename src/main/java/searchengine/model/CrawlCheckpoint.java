@@ -0,0 +1,42 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.util.Date;
+
+@Entity
+@Getter
+@Setter
+@Table(name = "crawl_checkpoints")
+public class CrawlCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(columnDefinition = "INT", nullable = false)
+    private int id;
+
+    @JoinColumn(name = "site_id", nullable = false, unique = true)
+    @OneToOne(fetch = FetchType.LAZY)
+    private Site site;
+
+    @Column(columnDefinition = "LONGTEXT CHARACTER SET " +
+            "utf8mb4 COLLATE utf8mb4_general_ci", nullable = false)
+    private String pending;
+
+    @Column(name = "claimed_pages", nullable = false)
+    private int claimedPages;
+
+    @Column(name = "saved_pages", nullable = false)
+    private int savedPages;
+
+    @Column(name = "last_page_id", nullable = false)
+    private int lastPageId;
+
+    @Column(nullable = false)
+    private boolean incremental;
+
+    @Column(name = "checkpoint_time", columnDefinition
+            = "DATETIME", nullable = false)
+    private Date checkpointTime;
+}
@@ -25,4 +25,7 @@ public class Index {
     @Column(name = "`rank`", nullable = false, columnDefinition = "FLOAT")
     private float rank;
 
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] positions;
+
 }
@@ -8,17 +8,20 @@ import javax.persistence.*;
 @Entity
 @Getter
 @Setter
-@Table(name = "lemmas")
+@Table(name = "lemmas", uniqueConstraints =
+        @UniqueConstraint(columnNames = {"site_id", "lemma"}))
 public class Lemma implements Comparable<Lemma> {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(columnDefinition = "INT", nullable = false)
     private int id;
 
+    @JoinColumn(name = "site_id")
     @ManyToOne(cascade = CascadeType.MERGE, fetch = FetchType.LAZY)
     private Site site;
 
-    @Column(nullable = false)
+    @Column(columnDefinition = "VARCHAR(255) CHARACTER SET " +
+            "utf8mb4 COLLATE utf8mb4_bin", nullable = false)
     private String lemma;
 
     @Column(nullable = false)
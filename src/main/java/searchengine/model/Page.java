@@ -29,5 +29,25 @@ public class Page {
             "utf8mb4 COLLATE utf8mb4_general_ci",
             nullable = false)
     private String content;
+
+    @Column(columnDefinition = "TEXT CHARACTER SET " +
+            "utf8mb4 COLLATE utf8mb4_general_ci")
+    private String title;
+
+    @Column(columnDefinition = "MEDIUMTEXT CHARACTER SET " +
+            "utf8mb4 COLLATE utf8mb4_general_ci")
+    private String text;
+
+    @Column(name = "token_offsets", columnDefinition = "MEDIUMBLOB")
+    private byte[] tokenOffsets;
+
+    @Column(columnDefinition = "VARCHAR(255)")
+    private String etag;
+
+    @Column(name = "last_modified", columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+
+    @Column(name = "content_hash", columnDefinition = "CHAR(64)")
+    private String contentHash;
 }
 
@@ -34,6 +34,9 @@ public class Site {
     @Column(nullable = false)
     private String name;
 
+    @Column(nullable = false)
+    private boolean published;
+
 
 }
 
@@ -0,0 +1,27 @@
+package searchengine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.model.CrawlCheckpoint;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CrawlCheckpointRepository extends JpaRepository<CrawlCheckpoint, Integer> {
+
+    @Query("SELECT c FROM CrawlCheckpoint c JOIN FETCH c.site")
+    List<CrawlCheckpoint> findAllWithSites();
+
+    @Query("SELECT c FROM CrawlCheckpoint c WHERE c.site.id = :siteId")
+    Optional<CrawlCheckpoint> findBySiteId(int siteId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM crawl_checkpoints WHERE site_id = :siteId",
+            nativeQuery = true)
+    void deleteBySiteId(int siteId);
+}
@@ -3,13 +3,14 @@ package searchengine.repositories;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
-import searchengine.model.Lemma;
+import searchengine.dto.indexation.PageVersion;
+import searchengine.dto.search.PageText;
 import searchengine.model.Page;
 import searchengine.model.Site;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 
 
 @Repository
@@ -17,24 +18,27 @@ public interface PageRepository extends JpaRepository<Page, Integer> {
 
     Optional<Page> findFirstByPathAndSite(String path, Site site);
 
-    boolean existsByPathAndSite(String path, Site site);
-
     Integer countPageBySite(Site site);
 
-    @Query(value = "SELECT * FROM pages p " +
-            "join indexes i on i.page_id = p. id " +
-            "join lemmas l on i.lemma_id = l.id " +
-            "where l.id in :lemmas " +
-            "AND p.site_id IN :sites", nativeQuery = true)
-    Set<Page> findByLemmasAndSites(List<Lemma> lemmas, List<Site> sites);
-
-
-    @Query(value = "SELECT * FROM pages p " +
-            "join indexes i on i.page_id = p. id " +
-            "join lemmas l on i.lemma_id = l.id " +
-            "where l.id = :lemma AND p.site_id IN :sites " +
-            "AND p.id in :pages", nativeQuery = true)
-    Set<Page> findByOneLemmaAndSitesAndPages(Lemma lemma, List<Site> sites,
-                                                  Set<Page> pages);
+    boolean existsByPathAndSiteAndCodeLessThan(String path, Site site, int code);
+
+    @Query(value = "SELECT path, " +
+            "IF(token_offsets IS NULL, NULL, etag) AS etag, " +
+            "IF(token_offsets IS NULL, NULL, last_modified) AS lastModified, " +
+            "IF(token_offsets IS NULL, NULL, content_hash) AS contentHash " +
+            "FROM pages WHERE site_id = :siteId", nativeQuery = true)
+    List<PageVersion> findVersionsBySite(int siteId);
+
+    @Query(value = "SELECT COALESCE(MAX(id), 0) FROM pages", nativeQuery = true)
+    int findMaxId();
+
+    @Query(value = "SELECT path FROM pages WHERE site_id = :siteId " +
+            "AND id > :id", nativeQuery = true)
+    List<String> findPathsAddedAfter(int siteId, int id);
+
+    @Query(value = "SELECT id, site_id AS siteId, path, title, text, " +
+            "token_offsets AS tokenOffsets " +
+            "FROM pages WHERE id IN :ids", nativeQuery = true)
+    List<PageText> findTextsByIds(Collection<Integer> ids);
 
 }
@@ -1,13 +1,40 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import searchengine.model.Site;
+import searchengine.model.Status;
 
+import java.util.List;
 import java.util.Optional;
 
 
 @Repository
 public interface SiteRepository extends JpaRepository<Site, Integer> {
-    Optional<Site> findFirstByUrl(String url);
+    Optional<Site> findFirstByUrlAndPublishedTrue(String url);
+
+    Optional<Site> findFirstByUrlOrderByIdDesc(String url);
+
+    List<Site> findAllByPublishedTrue();
+
+    List<Site> findAllByStatus(Status status);
+
+    @Modifying
+    @Query(value = "UPDATE sites SET published = (id = :id) " +
+            "WHERE url = :url", nativeQuery = true)
+    void publish(String url, int id);
+
+    @Modifying
+    @Query(value = "UPDATE sites s JOIN (SELECT url, " +
+            "MAX(IF(status = 'INDEXED', id, NULL)) AS id FROM sites " +
+            "GROUP BY url HAVING MAX(published) = 0) n ON n.id = s.id " +
+            "SET s.published = true", nativeQuery = true)
+    int publishLatestIndexed();
+
+    @Query(value = "SELECT * FROM sites s WHERE s.published = false " +
+            "AND s.status <> 'INDEXING' AND s.id < (SELECT MAX(o.id) " +
+            "FROM sites o WHERE o.url = s.url)", nativeQuery = true)
+    List<Site> findStale();
 }
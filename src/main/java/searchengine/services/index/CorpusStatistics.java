@@ -0,0 +1,84 @@
+package searchengine.services.index;
+
+import java.util.*;
+
+/**
+ * Counts of one site's part of the corpus: its pages and their total
+ * length, pages per lemma and the length of each page in lemma tokens.
+ * Owned by an {@link IndexShard}, updated together with its postings and
+ * guarded by the same lock, so every figure search needs for BM25 scoring
+ * or stop lemma pruning is a lookup, not an aggregate query.
+ */
+public class CorpusStatistics {
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private final Map<String, Integer> frequencies = new HashMap<>();
+    private int[] pageLengths = new int[64];
+    private int pages;
+    private long length;
+
+    void addPage(int slot) {
+        if (slot >= pageLengths.length) {
+            pageLengths = Arrays.copyOf(pageLengths,
+                    Math.max(pageLengths.length * 2, slot + 1));
+        }
+        pages++;
+    }
+
+    void addPosting(int slot, String lemma, int rank) {
+        frequencies.merge(lemma, 1, Integer::sum);
+        length += rank;
+        pageLengths[slot] += rank;
+    }
+
+    void removePage(int slot, Collection<String> lemmas) {
+        pages--;
+        length -= pageLengths[slot];
+        pageLengths[slot] = 0;
+        for (String lemma : lemmas) {
+            frequencies.computeIfPresent(lemma,
+                    (l, frequency) -> frequency > 1 ? frequency - 1 : null);
+        }
+    }
+
+    int countPages() {
+        return pages;
+    }
+
+    int countPages(String lemma) {
+        return frequencies.getOrDefault(lemma, 0);
+    }
+
+    Map<String, Integer> frequencies() {
+        return Collections.unmodifiableMap(frequencies);
+    }
+
+    long length() {
+        return length;
+    }
+
+    int pageLength(int slot) {
+        return pageLengths[slot];
+    }
+
+    /**
+     * BM25 weights of the query lemmas over all searched sites, fixed when
+     * the query starts so that scores of different shards compare.
+     */
+    public static class Scorer {
+        private final Map<String, Float> idf = new HashMap<>();
+        private final float averageLength;
+
+        Scorer(Map<String, Integer> frequencies, int pages, long length) {
+            frequencies.forEach((lemma, frequency) -> idf.put(lemma,
+                    (float) Math.log(1 + (pages - frequency + 0.5)
+                            / (frequency + 0.5))));
+            averageLength = pages == 0 ? 1 : (float) length / pages;
+        }
+
+        float score(String lemma, int rank, int pageLength) {
+            float norm = K1 * (1 - B + B * pageLength / averageLength);
+            return idf.getOrDefault(lemma, 0f) * rank * (K1 + 1) / (rank + norm);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package searchengine.services.index;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The part of the index that belongs to one site: its own lemma
+ * dictionary with posting lists and bitmaps, its live pages and its
+ * corpus counts, behind its own lock. Pages arrive in ascending id order
+ * and get consecutive slots for per-page data. Removed pages keep their
+ * slot and are only taken out of the live pages, their postings are
+ * dropped when dead postings outnumber live ones.
+ */
+class IndexShard {
+    private static final int MIN_POSTINGS_TO_COMPACT = 10_000;
+    private final int siteId;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final Map<String, PageBitmap> lemmaPages = new HashMap<>();
+    private final PageBitmap pages = new PageBitmap();
+    private final CorpusStatistics statistics = new CorpusStatistics();
+    private int[] pageIds = new int[64];
+    private int[] pagePostings = new int[64];
+    private int slots;
+    private long livePostings;
+    private long deadPostings;
+
+    IndexShard(int siteId) {
+        this.siteId = siteId;
+    }
+
+    ReadWriteLock lock() {
+        return lock;
+    }
+
+    void addPage(int pageId) {
+        if (slots > 0 && pageId <= pageIds[slots - 1]) {
+            throw new IllegalStateException("Страница " + pageId
+                    + " добавлена в индекс не по порядку");
+        }
+        if (slots == pageIds.length) {
+            pageIds = Arrays.copyOf(pageIds, slots * 2);
+            pagePostings = Arrays.copyOf(pagePostings, slots * 2);
+        }
+        pageIds[slots] = pageId;
+        statistics.addPage(slots++);
+        pages.add(pageId);
+    }
+
+    void addPosting(int pageId, String lemma, int rank, byte[] positions) {
+        int slot = slotOf(pageId);
+        if (slot < 0 || !pages.contains(pageId)) {
+            return;
+        }
+        postings.computeIfAbsent(lemma, l -> new PostingList())
+                .add(pageId, rank, positions);
+        lemmaPages.computeIfAbsent(lemma, l -> new PageBitmap()).add(pageId);
+        statistics.addPosting(slot, lemma, rank);
+        pagePostings[slot]++;
+        livePostings++;
+    }
+
+    void removePage(int pageId, Collection<String> lemmas) {
+        int slot = slotOf(pageId);
+        if (slot < 0 || !pages.contains(pageId)) {
+            return;
+        }
+        pages.remove(pageId);
+        statistics.removePage(slot, lemmas);
+        livePostings -= pagePostings[slot];
+        deadPostings += pagePostings[slot];
+        pagePostings[slot] = 0;
+        compactIfNeeded();
+    }
+
+    int countPages() {
+        return statistics.countPages();
+    }
+
+    int countPages(String lemma) {
+        return statistics.countPages(lemma);
+    }
+
+    long length() {
+        return statistics.length();
+    }
+
+    Map<String, Integer> frequencies() {
+        return statistics.frequencies();
+    }
+
+    List<PageMatch> findPages(Collection<String> required,
+                              Collection<String> scored,
+                              CorpusStatistics.Scorer scorer) {
+        List<PageBitmap> bitmaps = new ArrayList<>();
+        for (String lemma : required) {
+            PageBitmap lemmaBitmap = lemmaPages.get(lemma);
+            if (lemmaBitmap == null) {
+                return new ArrayList<>();
+            }
+            bitmaps.add(lemmaBitmap);
+        }
+        if (bitmaps.isEmpty()) {
+            return new ArrayList<>();
+        }
+        bitmaps.sort(Comparator.comparingInt(PageBitmap::cardinality));
+        PageBitmap result = bitmaps.get(0).and(pages);
+        for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++) {
+            result = result.and(bitmaps.get(i));
+        }
+        int[] ids = new int[result.cardinality()];
+        int[] count = {0};
+        result.forEach(pageId -> ids[count[0]++] = pageId);
+        float[] scores = score(ids, scored, scorer);
+        List<PageMatch> matches = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            matches.add(new PageMatch(ids[i], siteId, scores[i]));
+        }
+        return matches;
+    }
+
+    void findPositions(Collection<String> lemmas, int[] sortedIds,
+                       Map<Integer, Map<String, int[]>> positions) {
+        for (String lemma : lemmas) {
+            PostingList list = postings.get(lemma);
+            if (list == null) {
+                continue;
+            }
+            PostingList.Cursor cursor = list.cursor();
+            for (int pageId : sortedIds) {
+                if (!cursor.advance(pageId)) {
+                    break;
+                }
+                if (cursor.pageId() == pageId) {
+                    positions.computeIfAbsent(pageId, id -> new HashMap<>())
+                            .put(lemma, cursor.positions());
+                }
+            }
+        }
+    }
+
+    private float[] score(int[] ids, Collection<String> lemmas,
+                          CorpusStatistics.Scorer scorer) {
+        float[] scores = new float[ids.length];
+        for (String lemma : lemmas) {
+            PostingList list = postings.get(lemma);
+            if (list == null) {
+                continue;
+            }
+            PostingList.Cursor cursor = list.cursor();
+            for (int i = 0; i < ids.length; i++) {
+                if (!cursor.advance(ids[i])) {
+                    break;
+                }
+                if (cursor.pageId() == ids[i]) {
+                    scores[i] += scorer.score(lemma, cursor.rank(),
+                            statistics.pageLength(slotOf(ids[i])));
+                }
+            }
+        }
+        return scores;
+    }
+
+    private int slotOf(int pageId) {
+        return Arrays.binarySearch(pageIds, 0, slots, pageId);
+    }
+
+    private void compactIfNeeded() {
+        if (deadPostings < MIN_POSTINGS_TO_COMPACT
+                || deadPostings < livePostings) {
+            return;
+        }
+        Iterator<Map.Entry<String, PostingList>> iterator = postings
+                .entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PostingList> entry = iterator.next();
+            PostingList compacted = entry.getValue().compact(pages::contains);
+            if (compacted.size() == 0) {
+                iterator.remove();
+                lemmaPages.remove(entry.getKey());
+            } else {
+                entry.setValue(compacted);
+                lemmaPages.put(entry.getKey(), toBitmap(compacted));
+            }
+        }
+        deadPostings = 0;
+    }
+
+    private PageBitmap toBitmap(PostingList list) {
+        PageBitmap bitmap = new PageBitmap();
+        PostingList.Cursor cursor = list.cursor();
+        while (cursor.next()) {
+            bitmap.add(cursor.pageId());
+        }
+        return bitmap;
+    }
+}
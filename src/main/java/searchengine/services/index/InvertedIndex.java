@@ -0,0 +1,201 @@
+package searchengine.services.index;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * All lemmas of all sites in memory, partitioned into one
+ * {@link IndexShard} per site. A shard holds the posting lists of its
+ * lemmas, including the token positions on every page, the same pages as
+ * bitmaps and the corpus counts used for scoring. Loaded from
+ * {@code indexes} once at startup and then kept up to date by the page
+ * writer after every committed batch, so search never has to join pages,
+ * indexes and lemmas in the database. Every shard has its own lock, so
+ * writing one site never blocks searching another, and a dropped site
+ * takes its whole shard with it.
+ */
+@Component
+@RequiredArgsConstructor
+public class InvertedIndex {
+    private final DataSource dataSource;
+    private final Map<Integer, IndexShard> shards = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(Integer.MIN_VALUE);
+        streaming.query("SELECT id, site_id FROM pages ORDER BY id", rs -> {
+            int pageId = rs.getInt("id");
+            write(shard(rs.getInt("site_id")), shard -> shard.addPage(pageId));
+        });
+        streaming.query("SELECT i.page_id, l.site_id, l.lemma, i.`rank`, " +
+                "i.positions FROM indexes i JOIN lemmas l ON l.id = i.lemma_id " +
+                "ORDER BY i.page_id", rs -> {
+            IndexShard shard = shards.get(rs.getInt("site_id"));
+            if (shard != null) {
+                int pageId = rs.getInt("page_id");
+                String lemma = rs.getString("lemma");
+                int rank = Math.round(rs.getFloat("rank"));
+                byte[] positions = rs.getBytes("positions");
+                write(shard, s -> s.addPosting(pageId, lemma, rank, positions));
+            }
+        });
+    }
+
+    public void addPage(int pageId, int siteId, Map<String, int[]> lemmas) {
+        write(shard(siteId), shard -> {
+            shard.addPage(pageId);
+            lemmas.forEach((lemma, positions) -> shard.addPosting(pageId,
+                    lemma, positions.length, Positions.encode(positions)));
+        });
+    }
+
+    public void removePage(int siteId, int pageId, Collection<String> lemmas) {
+        IndexShard shard = shards.get(siteId);
+        if (shard != null) {
+            write(shard, s -> s.removePage(pageId, lemmas));
+        }
+    }
+
+    public void removeSite(int siteId) {
+        shards.remove(siteId);
+    }
+
+    public int countPages(Set<Integer> siteIds) {
+        int count = 0;
+        for (IndexShard shard : findShards(siteIds)) {
+            count += read(shard, shard::countPages);
+        }
+        return count;
+    }
+
+    public int countPages(String lemma, Set<Integer> siteIds) {
+        int count = 0;
+        for (IndexShard shard : findShards(siteIds)) {
+            count += read(shard, () -> shard.countPages(lemma));
+        }
+        return count;
+    }
+
+    /**
+     * Number of pages of the given sites each lemma occurs on.
+     */
+    public Map<String, Integer> collectFrequencies(Set<Integer> siteIds) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (IndexShard shard : findShards(siteIds)) {
+            read(shard, () -> {
+                shard.frequencies().forEach((lemma, frequency) ->
+                        frequencies.merge(lemma, frequency, Integer::sum));
+                return null;
+            });
+        }
+        return frequencies;
+    }
+
+    /**
+     * BM25 weights of the lemmas over the given sites together. Shards
+     * score their pages with it, which keeps their scores comparable.
+     */
+    public CorpusStatistics.Scorer scorer(Collection<String> lemmas,
+                                          Set<Integer> siteIds) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int pages = 0;
+        long length = 0;
+        for (IndexShard shard : findShards(siteIds)) {
+            Lock lock = shard.lock().readLock();
+            lock.lock();
+            try {
+                pages += shard.countPages();
+                length += shard.length();
+                for (String lemma : lemmas) {
+                    frequencies.merge(lemma, shard.countPages(lemma), Integer::sum);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return new CorpusStatistics.Scorer(frequencies, pages, length);
+    }
+
+    /**
+     * Pages of the site that contain all the required lemmas, each scored
+     * over the scored lemmas it contains.
+     */
+    public List<PageMatch> findPages(int siteId, Collection<String> required,
+                                     Collection<String> scored,
+                                     CorpusStatistics.Scorer scorer) {
+        IndexShard shard = shards.get(siteId);
+        if (shard == null) {
+            return new ArrayList<>();
+        }
+        return read(shard, () -> shard.findPages(required, scored, scorer));
+    }
+
+    /**
+     * Positions of the lemmas on the given pages, keyed by page id and
+     * lemma. Lemmas missing from a page are left out of its map.
+     */
+    public Map<Integer, Map<String, int[]>> findPositions(Collection<String> lemmas,
+                                                          List<PageMatch> pages) {
+        Map<Integer, List<Integer>> pagesBySite = new HashMap<>();
+        pages.forEach(page -> pagesBySite.computeIfAbsent(page.siteId(),
+                id -> new ArrayList<>()).add(page.pageId()));
+        Map<Integer, Map<String, int[]>> positions = new HashMap<>();
+        pagesBySite.forEach((siteId, pageIds) -> {
+            IndexShard shard = shards.get(siteId);
+            if (shard != null) {
+                int[] sortedIds = pageIds.stream().mapToInt(Integer::intValue)
+                        .sorted().toArray();
+                read(shard, () -> {
+                    shard.findPositions(lemmas, sortedIds, positions);
+                    return null;
+                });
+            }
+        });
+        return positions;
+    }
+
+    private IndexShard shard(int siteId) {
+        return shards.computeIfAbsent(siteId, IndexShard::new);
+    }
+
+    private List<IndexShard> findShards(Set<Integer> siteIds) {
+        List<IndexShard> found = new ArrayList<>();
+        for (int siteId : siteIds) {
+            IndexShard shard = shards.get(siteId);
+            if (shard != null) {
+                found.add(shard);
+            }
+        }
+        return found;
+    }
+
+    private <T> T read(IndexShard shard, Supplier<T> reader) {
+        Lock lock = shard.lock().readLock();
+        lock.lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(IndexShard shard, Consumer<IndexShard> writer) {
+        Lock lock = shard.lock().writeLock();
+        lock.lock();
+        try {
+            writer.accept(shard);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package searchengine.services.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of page ids in the Roaring layout: ids are split by their
+ * upper 16 bits into chunks, a chunk is a sorted array while it holds up
+ * to 4096 ids and a 65536-bit bitmap after that. Intersection walks the
+ * chunks of the smaller set and looks the matching chunks up in the
+ * larger one, so chunks present in only one set are skipped entirely.
+ */
+public class PageBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    public void add(int pageId) {
+        char key = (char) (pageId >>> 16);
+        int i = findKey(key);
+        if (i >= 0) {
+            containers[i] = containers[i].add((char) pageId);
+            return;
+        }
+        insertContainer(-i - 1, key, new ArrayContainer().add((char) pageId));
+    }
+
+    public void remove(int pageId) {
+        int i = findKey((char) (pageId >>> 16));
+        if (i < 0) {
+            return;
+        }
+        containers[i] = containers[i].remove((char) pageId);
+        if (containers[i].cardinality() == 0) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+            containers[--size] = null;
+        }
+    }
+
+    public boolean contains(int pageId) {
+        int i = findKey((char) (pageId >>> 16));
+        return i >= 0 && containers[i].contains((char) pageId);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public PageBitmap and(PageBitmap other) {
+        PageBitmap smaller = size <= other.size ? this : other;
+        PageBitmap larger = smaller == this ? other : this;
+        PageBitmap result = new PageBitmap();
+        for (int i = 0; i < smaller.size; i++) {
+            int j = larger.findKey(smaller.keys[i]);
+            if (j >= 0) {
+                Container container = smaller.containers[i]
+                        .and(larger.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.insertContainer(result.size, smaller.keys[i], container);
+                }
+            }
+        }
+        return result;
+    }
+
+    public int andCardinality(PageBitmap other) {
+        PageBitmap smaller = size <= other.size ? this : other;
+        PageBitmap larger = smaller == this ? other : this;
+        int cardinality = 0;
+        for (int i = 0; i < smaller.size; i++) {
+            int j = larger.findKey(smaller.keys[i]);
+            if (j >= 0) {
+                cardinality += smaller.containers[i]
+                        .andCardinality(larger.containers[j]);
+            }
+        }
+        return cardinality;
+    }
+
+    public PageBitmap or(PageBitmap other) {
+        PageBitmap result = new PageBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.insertContainer(result.size, keys[i], containers[i++].copy());
+            } else if (i == size || other.keys[j] < keys[i]) {
+                result.insertContainer(result.size, other.keys[j],
+                        other.containers[j++].copy());
+            } else {
+                result.insertContainer(result.size, keys[i],
+                        containers[i++].or(other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    private int findKey(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int i, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        size++;
+    }
+
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container copy();
+
+        abstract void forEach(int high, IntConsumer consumer);
+    }
+
+    private static class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            values = new char[4];
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_LIMIT));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        Container or(Container other) {
+            Container result = other.copy();
+            for (int i = 0; i < cardinality; i++) {
+                result = result.add(values[i]);
+            }
+            return result;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values,
+                    Math.max(cardinality, 4)), cardinality);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < cardinality; i++) {
+                consumer.accept(high | values[i]);
+            }
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer() {
+            words = new long[1024];
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                words[value >>> 6] &= ~bit;
+                cardinality--;
+            }
+            return cardinality <= ARRAY_LIMIT ? toArray() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[1024];
+            int count = 0;
+            for (int i = 0; i < 1024; i++) {
+                result[i] = words[i] & otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+            BitmapContainer bitmap = new BitmapContainer(result, count);
+            return count <= ARRAY_LIMIT ? bitmap.toArray() : bitmap;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.andCardinality(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < 1024; i++) {
+                count += Long.bitCount(words[i] & otherWords[i]);
+            }
+            return count;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.or(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[1024];
+            int count = 0;
+            for (int i = 0; i < 1024; i++) {
+                result[i] = words[i] | otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+            return new BitmapContainer(result, count);
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(high | (i << 6)
+                            | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[Math.max(cardinality, 4)];
+            int count = 0;
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) ((i << 6)
+                            | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+}
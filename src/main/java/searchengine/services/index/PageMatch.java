@@ -0,0 +1,4 @@
+package searchengine.services.index;
+
+public record PageMatch(int pageId, int siteId, float relevance) {
+}
@@ -0,0 +1,76 @@
+package searchengine.services.index;
+
+import java.util.Arrays;
+
+/**
+ * Storage formats for token positions. Positions of a lemma on a page are
+ * ascending token numbers and are kept as varint deltas. Token offsets of
+ * a page are kept as fixed four-byte character offsets, so the offset of
+ * any token can be read without decoding the ones before it.
+ */
+public final class Positions {
+
+    private Positions() {
+    }
+
+    public static byte[] encode(int[] positions) {
+        byte[] data = new byte[positions.length * 5];
+        int length = 0;
+        int previous = 0;
+        for (int position : positions) {
+            int value = position - previous;
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+            previous = position;
+        }
+        return Arrays.copyOf(data, length);
+    }
+
+    public static int[] decode(byte[] data) {
+        return data == null ? new int[0] : decode(data, 0, data.length);
+    }
+
+    public static int[] decode(byte[] data, int from, int to) {
+        int[] positions = new int[to - from];
+        int count = 0;
+        int previous = 0;
+        int offset = from;
+        while (offset < to) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += value;
+            positions[count++] = previous;
+        }
+        return Arrays.copyOf(positions, count);
+    }
+
+    public static byte[] encodeOffsets(int[] offsets, int count) {
+        byte[] data = new byte[count * 4];
+        for (int i = 0; i < count; i++) {
+            data[i * 4] = (byte) (offsets[i] >>> 24);
+            data[i * 4 + 1] = (byte) (offsets[i] >>> 16);
+            data[i * 4 + 2] = (byte) (offsets[i] >>> 8);
+            data[i * 4 + 3] = (byte) offsets[i];
+        }
+        return data;
+    }
+
+    public static int offsetCount(byte[] offsets) {
+        return offsets == null ? 0 : offsets.length / 4;
+    }
+
+    public static int offsetAt(byte[] offsets, int token) {
+        int i = token * 4;
+        return (offsets[i] & 0xFF) << 24 | (offsets[i + 1] & 0xFF) << 16
+                | (offsets[i + 2] & 0xFF) << 8 | (offsets[i + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,157 @@
+package searchengine.services.index;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Pages of one lemma in ascending id order with the lemma's rank and token
+ * positions on each page. Ids are stored as varint deltas, ranks as
+ * varints, positions in the {@link Positions} format behind their byte
+ * length, so a cursor skips them unless they are asked for.
+ */
+public class PostingList {
+    private byte[] data = new byte[16];
+    private int length;
+    private int size;
+    private int lastPageId;
+
+    public void add(int pageId, int rank, byte[] positions) {
+        if (positions == null) {
+            positions = new byte[0];
+        }
+        if (pageId <= lastPageId) {
+            insert(pageId, rank, positions, 0, positions.length);
+            return;
+        }
+        append(pageId, rank, positions, 0, positions.length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    public PostingList compact(IntPredicate isLive) {
+        PostingList compacted = new PostingList();
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            if (isLive.test(cursor.pageId())) {
+                compacted.append(cursor);
+            }
+        }
+        return compacted;
+    }
+
+    private void append(Cursor cursor) {
+        append(cursor.pageId, cursor.rank, cursor.source(),
+                cursor.positionsFrom, cursor.positionsTo);
+    }
+
+    private void append(int pageId, int rank, byte[] positions, int from, int to) {
+        int needed = 15 + to - from;
+        if (data.length - length < needed) {
+            byte[] grown = new byte[Math.max(data.length * 2, length + needed)];
+            System.arraycopy(data, 0, grown, 0, length);
+            data = grown;
+        }
+        length = writeVarInt(pageId - lastPageId, length);
+        length = writeVarInt(rank, length);
+        length = writeVarInt(to - from, length);
+        System.arraycopy(positions, from, data, length, to - from);
+        length += to - from;
+        lastPageId = pageId;
+        size++;
+    }
+
+    private void insert(int pageId, int rank, byte[] positions, int from, int to) {
+        PostingList rebuilt = new PostingList();
+        Cursor cursor = cursor();
+        boolean inserted = false;
+        while (cursor.next()) {
+            if (!inserted && cursor.pageId() >= pageId) {
+                rebuilt.append(pageId, rank, positions, from, to);
+                inserted = true;
+                if (cursor.pageId() == pageId) {
+                    continue;
+                }
+            }
+            rebuilt.append(cursor);
+        }
+        if (!inserted) {
+            rebuilt.append(pageId, rank, positions, from, to);
+        }
+        data = rebuilt.data;
+        length = rebuilt.length;
+        size = rebuilt.size;
+        lastPageId = rebuilt.lastPageId;
+    }
+
+    private int writeVarInt(int value, int offset) {
+        while ((value & ~0x7F) != 0) {
+            data[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[offset++] = (byte) value;
+        return offset;
+    }
+
+    public class Cursor {
+        private int offset;
+        private int pageId;
+        private int rank;
+        private int positionsFrom;
+        private int positionsTo;
+
+        public boolean next() {
+            if (offset >= length) {
+                return false;
+            }
+            pageId += readVarInt();
+            rank = readVarInt();
+            int positionsLength = readVarInt();
+            positionsFrom = offset;
+            positionsTo = offset + positionsLength;
+            offset = positionsTo;
+            return true;
+        }
+
+        public boolean advance(int target) {
+            while (pageId < target) {
+                if (!next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public int pageId() {
+            return pageId;
+        }
+
+        public int rank() {
+            return rank;
+        }
+
+        public int[] positions() {
+            return Positions.decode(data, positionsFrom, positionsTo);
+        }
+
+        private byte[] source() {
+            return data;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
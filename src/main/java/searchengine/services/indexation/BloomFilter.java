@@ -0,0 +1,79 @@
+package searchengine.services.indexation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compact visited set for very large sites. May report an unseen URL as
+ * seen with the configured probability, but never the other way round.
+ */
+public class BloomFilter {
+    private static final int LOCK_STRIPES = 64;
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public BloomFilter(long expectedItems, double falsePositiveRate) {
+        long items = Math.max(expectedItems, 1);
+        double ln2 = Math.log(2);
+        long wanted = (long) Math.ceil(-items * Math.log(falsePositiveRate)
+                / (ln2 * ln2));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8,
+                Math.max(1, (wanted + 63) / 64));
+        bits = new AtomicLongArray(words);
+        bitCount = (long) words * 64;
+        hashCount = (int) Math.max(1, Math.round((double) bitCount / items * ln2));
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public boolean add(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1);
+        synchronized (locks[(int) (hash1 & (LOCK_STRIPES - 1))]) {
+            boolean added = false;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+                added |= setBit(bit);
+            }
+            return added;
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean setBit(long bit) {
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        return (bits.getAndUpdate(word, w -> w | mask) & mask) == 0;
+    }
+
+    private long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value | 1;
+    }
+}
@@ -0,0 +1,72 @@
+package searchengine.services.indexation;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import searchengine.model.CrawlCheckpoint;
+import searchengine.repositories.CrawlCheckpointRepository;
+import searchengine.repositories.PageRepository;
+
+import java.util.*;
+
+/**
+ * Saves what is left to crawl of a site: every claimed path that has not
+ * been committed yet, with its depth. Completed pages are not stored,
+ * on resume they are taken from the {@code pages} table. The writer keeps
+ * committing after a checkpoint is taken, so the last page id is saved
+ * before the pending paths: pages above it are crawled again on resume,
+ * together with the links they lead to.
+ */
+@Service
+@RequiredArgsConstructor
+public class CheckpointService {
+    private final CrawlCheckpointRepository checkpointRepo;
+    private final PageRepository pageRepo;
+
+    public synchronized void save(WebScraper scraper) {
+        if (scraper.isFinished()) {
+            return;
+        }
+        CrawlCheckpoint checkpoint = checkpointRepo
+                .findBySiteId(scraper.getSite().getId())
+                .orElseGet(CrawlCheckpoint::new);
+        checkpoint.setSite(scraper.getSite());
+        checkpoint.setLastPageId(pageRepo.findMaxId());
+        checkpoint.setPending(writePending(scraper.getPendingPaths()));
+        checkpoint.setClaimedPages(scraper.getFrontier().getClaimedCount());
+        checkpoint.setSavedPages(scraper.getSavedPages().get());
+        checkpoint.setIncremental(!scraper.getKnownPages().isEmpty());
+        checkpoint.setCheckpointTime(new Date());
+        checkpointRepo.saveAndFlush(checkpoint);
+    }
+
+    public synchronized void delete(int siteId) {
+        checkpointRepo.deleteBySiteId(siteId);
+    }
+
+    public synchronized void deleteAll() {
+        checkpointRepo.deleteAllInBatch();
+    }
+
+    public List<CrawlCheckpoint> findAll() {
+        return checkpointRepo.findAllWithSites();
+    }
+
+    public Map<String, Integer> readPending(CrawlCheckpoint checkpoint) {
+        Map<String, Integer> pending = new HashMap<>();
+        for (String line : checkpoint.getPending().split("\n")) {
+            int tab = line.indexOf('\t');
+            if (tab > 0) {
+                pending.put(line.substring(tab + 1),
+                        Integer.parseInt(line.substring(0, tab)));
+            }
+        }
+        return pending;
+    }
+
+    private String writePending(Map<String, Integer> pendingPaths) {
+        StringBuilder pending = new StringBuilder();
+        pendingPaths.forEach((path, depth) -> pending.append(depth)
+                .append('\t').append(path).append('\n'));
+        return pending.toString();
+    }
+}
@@ -0,0 +1,50 @@
+package searchengine.services.indexation;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers which paths of a site were already scheduled, so that every
+ * path is claimed by exactly one task and the crawler does not have to ask
+ * the database about each discovered link.
+ */
+public class CrawlFrontier {
+    private final Set<String> visited;
+    private final BloomFilter bloomFilter;
+    private final AtomicInteger claimed = new AtomicInteger();
+
+    public CrawlFrontier() {
+        visited = ConcurrentHashMap.newKeySet();
+        bloomFilter = null;
+    }
+
+    public CrawlFrontier(long expectedPaths, double falsePositiveRate) {
+        visited = null;
+        bloomFilter = new BloomFilter(expectedPaths, falsePositiveRate);
+    }
+
+    public boolean claim(String path) {
+        String key = normalize(path);
+        boolean added = bloomFilter == null
+                ? visited.add(key)
+                : bloomFilter.add(key);
+        if (added) {
+            claimed.incrementAndGet();
+        }
+        return added;
+    }
+
+    public int getClaimedCount() {
+        return claimed.get();
+    }
+
+    protected static String normalize(String path) {
+        int end = path.indexOf('#');
+        String key = end == -1 ? path : path.substring(0, end);
+        while (key.endsWith("/")) {
+            key = key.substring(0, key.length() - 1);
+        }
+        return key;
+    }
+}
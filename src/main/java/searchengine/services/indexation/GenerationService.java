@@ -0,0 +1,139 @@
+package searchengine.services.indexation;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.PipelineSettings;
+import searchengine.model.Site;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.index.InvertedIndex;
+import searchengine.services.suggest.SuggestService;
+
+import javax.annotation.PostConstruct;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Every crawl of a site writes into its own row in {@code sites}, one
+ * generation. Search only reads the published generation of each site,
+ * so a full reindex never touches the data search is using. Publishing
+ * switches the flag for all rows of the url in one statement, after that
+ * the previous generation is deleted in small chunks. Publishing, the
+ * suggest rebuild and deleting run on one background thread, so the page
+ * writer that finishes a crawl never waits for them.
+ * A generation whose main page could not be indexed is never published,
+ * the previous one stays in use and the failed one is deleted instead.
+ */
+@Service
+@RequiredArgsConstructor
+public class GenerationService {
+    private static final String UNUSABLE_GENERATION_MESSAGE =
+            "Главная страница сайта не проиндексирована, " +
+                    "поиск использует предыдущую индексацию";
+    private final SiteRepository siteRepo;
+    private final PageRepository pageRepo;
+    private final LemmaRepository lemmaRepo;
+    private final CheckpointService checkpointService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PipelineSettings settings;
+    private final LemmaDictionary lemmaDictionary;
+    private final IndexEpoch indexEpoch;
+    private final InvertedIndex invertedIndex;
+    private final SuggestService suggestService;
+    private final ExecutorService collector = Executors
+            .newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "generation-collector");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Rows written before generations existed are all unpublished, so the
+     * newest indexed row of every url without a published one is published
+     * once at startup.
+     */
+    @PostConstruct
+    public void publishExisting() {
+        Integer published = transactionTemplate.execute(status ->
+                siteRepo.publishLatestIndexed());
+        if (published != null && published > 0) {
+            suggestService.rebuild();
+        }
+    }
+
+    public Optional<Site> findCurrent(String url) {
+        return siteRepo.findFirstByUrlAndPublishedTrue(url)
+                .or(() -> siteRepo.findFirstByUrlOrderByIdDesc(url));
+    }
+
+    /**
+     * Finishes a crawled generation: drops its checkpoint and unused
+     * lemmas, then publishes it or discards it. A crawl finishes on the
+     * page writer thread, so all of this is handed to the collector.
+     */
+    public void publish(Site site) {
+        collector.execute(() -> {
+            checkpointService.delete(site.getId());
+            lemmaRepo.deleteUnusedBySite(site.getId());
+            if (!site.isPublished() && !isUsable(site)) {
+                discard(site);
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status ->
+                    siteRepo.publish(site.getUrl(), site.getId()));
+            indexEpoch.advance(Set.of(site.getId()));
+            suggestService.rebuild();
+            deleteStale();
+        });
+    }
+
+    public void collectStale() {
+        collector.execute(this::deleteStale);
+    }
+
+    private void deleteStale() {
+        for (Site site : siteRepo.findStale()) {
+            delete(site);
+        }
+    }
+
+    private boolean isUsable(Site site) {
+        return pageRepo.existsByPathAndSiteAndCodeLessThan("/", site, 400);
+    }
+
+    private void discard(Site site) {
+        Optional<Site> current = siteRepo.findFirstByUrlAndPublishedTrue(site.getUrl());
+        if (current.isEmpty()) {
+            return;
+        }
+        current.get().setLastError(site.getLastError() != null
+                ? site.getLastError() : UNUSABLE_GENERATION_MESSAGE);
+        siteRepo.saveAndFlush(current.get());
+        delete(site);
+    }
+
+    private void delete(Site site) {
+        int id = site.getId();
+        jdbcTemplate.update("DELETE FROM crawl_checkpoints WHERE site_id = ?", id);
+        deleteInChunks("DELETE FROM indexes WHERE page_id IN " +
+                "(SELECT id FROM pages WHERE site_id = ?) LIMIT ?", id);
+        deleteInChunks("DELETE FROM lemmas WHERE site_id = ? LIMIT ?", id);
+        deleteInChunks("DELETE FROM pages WHERE site_id = ? LIMIT ?", id);
+        siteRepo.deleteById(id);
+        invertedIndex.removeSite(id);
+        lemmaDictionary.forgetSite(id);
+    }
+
+    private void deleteInChunks(String sql, int siteId) {
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, siteId, settings.getGcChunkSize());
+        } while (deleted >= settings.getGcChunkSize());
+    }
+}
@@ -0,0 +1,44 @@
+package searchengine.services.indexation;
+
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters that move forward every time the searchable index changes:
+ * one for the whole index and one per site. They are advanced after each
+ * committed batch of pages and after a generation is published. Anything
+ * derived from the index can be cached together with the epochs it was
+ * computed at and dropped once one of them has moved.
+ */
+@Component
+public class IndexEpoch {
+    private final AtomicLong epoch = new AtomicLong();
+    private final Map<Integer, AtomicLong> siteEpochs = new ConcurrentHashMap<>();
+
+    public long current() {
+        return epoch.get();
+    }
+
+    public long current(int siteId) {
+        AtomicLong siteEpoch = siteEpochs.get(siteId);
+        return siteEpoch == null ? 0 : siteEpoch.get();
+    }
+
+    public Map<Integer, Long> snapshot(Set<Integer> siteIds) {
+        Map<Integer, Long> snapshot = new HashMap<>();
+        siteIds.forEach(siteId -> snapshot.put(siteId, current(siteId)));
+        return snapshot;
+    }
+
+    public void advance(Set<Integer> siteIds) {
+        siteIds.forEach(siteId -> siteEpochs
+                .computeIfAbsent(siteId, id -> new AtomicLong())
+                .incrementAndGet());
+        epoch.incrementAndGet();
+    }
+}
@@ -7,9 +7,11 @@ public interface IndexationService {
     String[] errors = {"Индексация уже запущена",
             "Индексация не запущена",
             "Данная страница находится за пределами сайтов, " +
-                    "указанных в конфигурационном файле"};
+                    "указанных в конфигурационном файле",
+            "Нет прерванной индексации, которую можно продолжить"};
     String IS_STOPPED_BY_USER_MESSAGE = "Индексация остановлена пользователем";
-    Response startIndexingAndGetResponse();
+    Response startIndexingAndGetResponse(boolean incremental);
+    Response resumeIndexingAndGetResponse();
     Response stopIndexingAndGetResponse();
     Response indexPageAndGetIndexPageResponse(String url);
 
@@ -3,17 +3,17 @@ package searchengine.services.indexation;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import org.jsoup.Connection;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Service;
 
 import searchengine.config.JsoupSettings;
+import searchengine.config.PipelineSettings;
 import searchengine.config.SiteConfig;
 import searchengine.config.SitesList;
+import searchengine.dto.indexation.PageVersion;
 import searchengine.dto.statistics.Response;
 import searchengine.model.*;
-import searchengine.repositories.IndexRepository;
-import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 
@@ -27,21 +27,23 @@ import java.util.concurrent.*;
 @Getter
 public class IndexationServiceImpl implements IndexationService {
     private final SitesList sitesList;
-    private ForkJoinPool pool;
+    private IndexingPipeline pipeline;
     private final SiteRepository siteRepo;
     private final PageRepository pageRepo;
-    private final LemmaRepository lemmaRepo;
-    private final IndexRepository indexRepo;
     private final JsoupSettings settings;
     private final EntitySaver entitySaver;
+    private final PolitenessScheduler scheduler;
+    private final PipelineSettings pipelineSettings;
+    private final GenerationService generations;
+    private final CheckpointService checkpointService;
 
 
     @Override
-    public Response startIndexingAndGetResponse() {
+    public Response startIndexingAndGetResponse(boolean incremental) {
         Response response = new Response();
         if (!isIndexing()) {
             response.setResult(true);
-            startIndexing();
+            startIndexing(incremental);
         } else {
             response.setError(errors[0]);
             response.setResult(false);
@@ -49,6 +51,23 @@ public class IndexationServiceImpl implements IndexationService {
         return response;
     }
 
+    @Override
+    public Response resumeIndexingAndGetResponse() {
+        Response response = new Response();
+        if (isIndexing()) {
+            response.setError(errors[0]);
+            return response;
+        }
+        List<CrawlCheckpoint> checkpoints = checkpointService.findAll();
+        if (checkpoints.isEmpty()) {
+            response.setError(errors[3]);
+            return response;
+        }
+        response.setResult(true);
+        resumeIndexing(checkpoints);
+        return response;
+    }
+
     @Override
     public Response stopIndexingAndGetResponse() {
         Response response = new Response();
@@ -78,39 +97,109 @@ public class IndexationServiceImpl implements IndexationService {
         return response;
     }
 
-    private void clearDB() {
-        indexRepo.deleteAllInBatch();
-        lemmaRepo.deleteAllInBatch();
-        pageRepo.deleteAllInBatch();
-        siteRepo.deleteAllInBatch();
-    }
-
-    private void startIndexing() {
+    private void startIndexing(boolean incremental) {
         WebScraper.isStopped = false;
-        clearDB();
+        List<Site> sites = new ArrayList<>();
         for (SiteConfig s : sitesList.getSites()) {
-            entitySaver.saveSite(s, Status.INDEXING);
+            sites.add(incremental ? prepareSiteForUpdate(s)
+                    : entitySaver.saveSite(s, Status.INDEXING));
+        }
+        checkpointService.deleteAll();
+        if (!incremental) {
+            generations.collectStale();
         }
-        pool = new ForkJoinPool();
-        ArrayList<Thread> threads = new ArrayList<>();
-        List<Site> sites = siteRepo.findAll();
+        IndexingPipeline newPipeline = new IndexingPipeline(pipelineSettings,
+                scheduler, entitySaver, checkpointService);
         for (Site site : sites) {
-            threads.add(new Thread(() -> {
-                pool.invoke(new WebScraper(site, "",
-                        siteRepo, pageRepo, settings,
-                        entitySaver));
-                setIndexed(site);
-            }));
+            Map<String, PageVersion> knownPages = incremental
+                    ? findKnownPages(site) : Map.of();
+            Map<String, Integer> seeds = new LinkedHashMap<>();
+            seeds.put("", 0);
+            knownPages.keySet().forEach(path -> seeds.put(path, 0));
+            newPipeline.crawl(new WebScraper(site, siteRepo, settings,
+                    createFrontier(site), knownPages,
+                    () -> setIndexed(site)), seeds);
+        }
+        pipeline = newPipeline;
+        pipeline.start();
+    }
+
+    private void resumeIndexing(List<CrawlCheckpoint> checkpoints) {
+        WebScraper.isStopped = false;
+        IndexingPipeline newPipeline = new IndexingPipeline(pipelineSettings,
+                scheduler, entitySaver, checkpointService);
+        for (CrawlCheckpoint checkpoint : checkpoints) {
+            Site site = checkpoint.getSite();
+            site.setStatus(Status.INDEXING);
+            site.setStatusTime(new Date());
+            site.setLastError(null);
+            siteRepo.saveAndFlush(site);
+            Map<String, PageVersion> knownPages = checkpoint.isIncremental()
+                    ? findKnownPages(site) : new HashMap<>();
+            Map<String, Integer> pending = checkpointService
+                    .readPending(checkpoint);
+            for (String path : pageRepo.findPathsAddedAfter(site.getId(),
+                    checkpoint.getLastPageId())) {
+                pending.putIfAbsent(path.equals("/") ? "" : path, 0);
+                knownPages.remove(path);
+            }
+            CrawlFrontier frontier = createFrontier(site);
+            WebScraper scraper = new WebScraper(site, siteRepo, settings,
+                    frontier, knownPages, () -> setIndexed(site));
+            for (PageVersion version : pageRepo.findVersionsBySite(site.getId())) {
+                String path = version.getPath().equals("/") ? ""
+                        : version.getPath();
+                if (pending.containsKey(path)
+                        || pending.containsKey(version.getPath())) {
+                    scraper.getStoredPaths().add(version.getPath());
+                } else {
+                    frontier.claim(path);
+                }
+            }
+            scraper.getSavedPages().set(checkpoint.getSavedPages());
+            newPipeline.crawl(scraper, pending);
         }
-        threads.forEach(Thread::start);
+        pipeline = newPipeline;
+        pipeline.start();
     }
 
+    private Site prepareSiteForUpdate(SiteConfig s) {
+        Optional<Site> optSite = generations
+                .findCurrent(entitySaver.removeLastDash(s.getUrl()));
+        if (optSite.isEmpty()) {
+            return entitySaver.saveSite(s, Status.INDEXING);
+        }
+        optSite.get().setStatus(Status.INDEXING);
+        optSite.get().setStatusTime(new Date());
+        optSite.get().setLastError(null);
+        return siteRepo.saveAndFlush(optSite.get());
+    }
+
+    private Map<String, PageVersion> findKnownPages(Site site) {
+        Map<String, PageVersion> knownPages = new HashMap<>();
+        for (PageVersion version : pageRepo.findVersionsBySite(site.getId())) {
+            knownPages.put(version.getPath(), version);
+        }
+        return knownPages;
+    }
+
+
+    private CrawlFrontier createFrontier(Site site) {
+        for (SiteConfig s : sitesList.getSites()) {
+            if (s.getExpectedPages() != null
+                    && s.getUrl().startsWith(site.getUrl())) {
+                return new CrawlFrontier(s.getExpectedPages(),
+                        pipelineSettings.getBloomFalsePositiveRate());
+            }
+        }
+        return new CrawlFrontier();
+    }
 
     private Site findSiteByPageURL(String url) {
-        List<Site> siteList = siteRepo.findAll();
-        for (Site site : siteList) {
-            if (url.startsWith(site.getUrl())) {
-                return site;
+        for (SiteConfig s : sitesList.getSites()) {
+            String siteUrl = entitySaver.removeLastDash(s.getUrl());
+            if (url.startsWith(siteUrl)) {
+                return generations.findCurrent(siteUrl).orElse(null);
             }
         }
         return null;
@@ -118,18 +207,35 @@ public class IndexationServiceImpl implements IndexationService {
 
     private void indexPage(String url) {
         try {
-            Document document = Jsoup.connect(url).get();
+            scheduler.acquire(url).join();
+            Connection.Response response = Jsoup.connect(url)
+                    .execute().bufferUp();
             Site site = findSiteByPageURL(url);
             if (site != null) {
-                entitySaver.indexAndSavePageToDB(document, site,
-                        url.replace(site.getUrl(), ""));
+                entitySaver.indexAndSavePageToDB(response, site,
+                        url.replace(site.getUrl(), ""),
+                        error -> onPageSaved(site, url, error));
             }
         } catch (IOException ex) {
             setFailed("Страницу " + url
                     + " проиндексировать не удалось");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
     }
 
+    private void onPageSaved(Site site, String url, Exception error) {
+        if (error == null) {
+            return;
+        }
+        siteRepo.findById(site.getId()).ifPresent(s -> {
+            s.setStatus(Status.FAILED);
+            s.setLastError("Страницу " + url + " проиндексировать " +
+                    "не удалось. Сообщение ошибки: " + error);
+            siteRepo.saveAndFlush(s);
+        });
+    }
+
     private boolean siteIsPresent(String url) throws IOException {
         if (!url.matches("https?://[\\w\\W]+")) {
             return false;
@@ -150,18 +256,19 @@ public class IndexationServiceImpl implements IndexationService {
 
 
     public boolean isIndexing() {
-        if (pool == null) {
+        if (pipeline == null) {
             return false;
         }
-        return !pool.isQuiescent();
+        return pipeline.isRunning();
     }
 
     private void stopIndexing() {
         if (!isIndexing()) {
             return;
         }
+        pipeline.stopCheckpoints();
         WebScraper.isStopped = true;
-        pool.shutdownNow();
+        pipeline.shutdownNow();
         setFailed(IS_STOPPED_BY_USER_MESSAGE);
     }
 
@@ -170,21 +277,23 @@ public class IndexationServiceImpl implements IndexationService {
         if (WebScraper.isStopped) {
             return;
         }
-        Optional<Site> optSite = siteRepo
-                .findFirstByUrl(site.getUrl());
-        if (optSite.isPresent() && !optSite.get()
-                .getStatus().equals(Status.FAILED)) {
+        Optional<Site> optSite = siteRepo.findById(site.getId());
+        if (optSite.isEmpty()) {
+            return;
+        }
+        if (!optSite.get().getStatus().equals(Status.FAILED)) {
             optSite.get().setStatus(Status.INDEXED);
             optSite.get().setStatusTime(new Date());
             optSite.get().setLastError(null);
             siteRepo.saveAndFlush(optSite.get());
         }
+        generations.publish(optSite.get());
     }
 
     private void setFailed(String message) {
-        List<Site> sites = siteRepo.findAll();
+        List<Site> sites = siteRepo.findAllByStatus(Status.INDEXING);
         try {
-            if (pool.awaitTermination(3_000,
+            if (pipeline.awaitTermination(3_000,
                     TimeUnit.MILLISECONDS)) {
                 sites.forEach(site -> {
                     site.setStatus(Status.FAILED);
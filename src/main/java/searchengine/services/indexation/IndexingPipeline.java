@@ -0,0 +1,268 @@
+package searchengine.services.indexation;
+
+import org.jsoup.Connection;
+import org.jsoup.nodes.Document;
+import searchengine.config.PipelineSettings;
+import searchengine.model.Page;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Indexing split into fetch, parse, lemmatize and persist stages.
+ * Stages are connected with bounded queues, so a slow stage blocks the
+ * one before it and, in the end, stops the fetcher from taking new pages.
+ * Persisting is done by {@link PageWriter}, whose queue is the last one.
+ * Only the fetch queue is unbounded because parsers must never block
+ * on the links they discover. Every host waits for at most one politeness
+ * slot at a time, its other pages stay in a ready queue, and a fetch permit
+ * is only taken once the slot has come, so a slow host never holds permits
+ * that other hosts could use.
+ */
+public class IndexingPipeline {
+    private final PipelineSettings settings;
+    private final PolitenessScheduler scheduler;
+    private final EntitySaver entitySaver;
+    private final CheckpointService checkpointService;
+    private final BlockingQueue<PageTask> fetchQueue = new LinkedBlockingQueue<>();
+    private final BlockingQueue<PageTask> parseQueue;
+    private final BlockingQueue<PageTask> lemmatizeQueue;
+    private final Semaphore fetchPermits;
+    private final ExecutorService fetchExecutor;
+    private final ExecutorService stageExecutor;
+    private final ScheduledExecutorService checkpointExecutor;
+    private final List<WebScraper> scrapers = new CopyOnWriteArrayList<>();
+    private final Map<String, Queue<PageTask>> readyTasks = new HashMap<>();
+    private final AtomicInteger activeSites = new AtomicInteger();
+    private volatile boolean stopped;
+
+    public IndexingPipeline(PipelineSettings settings,
+                            PolitenessScheduler scheduler,
+                            EntitySaver entitySaver,
+                            CheckpointService checkpointService) {
+        this.settings = settings;
+        this.scheduler = scheduler;
+        this.entitySaver = entitySaver;
+        this.checkpointService = checkpointService;
+        parseQueue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        lemmatizeQueue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        fetchPermits = new Semaphore(settings.getFetchThreads()
+                + settings.getQueueCapacity());
+        fetchExecutor = Executors.newFixedThreadPool(settings
+                .getFetchThreads(), threadFactory("page-fetcher"));
+        stageExecutor = Executors.newCachedThreadPool(
+                threadFactory("indexing-stage"));
+        checkpointExecutor = Executors.newSingleThreadScheduledExecutor(
+                threadFactory("crawl-checkpoint"));
+    }
+
+    public void crawl(WebScraper scraper, Map<String, Integer> seeds) {
+        scrapers.add(scraper);
+        activeSites.incrementAndGet();
+        seeds.forEach((path, depth) -> {
+            if (scraper.getFrontier().claim(path)) {
+                submit(new PageTask(scraper, path, depth));
+            }
+        });
+        if (scraper.finishIfIdle()) {
+            activeSites.decrementAndGet();
+        }
+    }
+
+    public void start() {
+        startStage(1, fetchQueue, this::dispatch);
+        startStage(settings.getParseThreads(), parseQueue, this::parse);
+        startStage(settings.getLemmatizeThreads(), lemmatizeQueue, this::lemmatize);
+        checkpointExecutor.scheduleAtFixedRate(this::saveCheckpoints,
+                settings.getCheckpointInterval(),
+                settings.getCheckpointInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    public void stopCheckpoints() {
+        checkpointExecutor.shutdownNow();
+        saveCheckpoints();
+    }
+
+    public boolean isRunning() {
+        return !stopped && activeSites.get() > 0;
+    }
+
+    public void shutdownNow() {
+        stopped = true;
+        checkpointExecutor.shutdownNow();
+        stageExecutor.shutdownNow();
+        fetchExecutor.shutdownNow();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return stageExecutor.awaitTermination(timeout, unit)
+                && fetchExecutor.awaitTermination(timeout, unit);
+    }
+
+    private void saveCheckpoints() {
+        for (WebScraper scraper : scrapers) {
+            try {
+                checkpointService.save(scraper);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void submit(PageTask task) {
+        task.getScraper().pageStarted(task);
+        fetchQueue.add(task);
+    }
+
+    private void dispatch(PageTask task) {
+        String host = scheduler.getHost(task.getUrl());
+        synchronized (readyTasks) {
+            Queue<PageTask> tasks = readyTasks.get(host);
+            if (tasks != null) {
+                tasks.add(task);
+                return;
+            }
+            readyTasks.put(host, new ArrayDeque<>());
+        }
+        reserveSlot(task);
+    }
+
+    private void reserveSlot(PageTask task) {
+        scheduler.acquire(task.getUrl())
+                .thenRunAsync(() -> fetch(task), fetchExecutor);
+    }
+
+    private void reserveNextSlot(PageTask task) {
+        String host = scheduler.getHost(task.getUrl());
+        PageTask next;
+        synchronized (readyTasks) {
+            Queue<PageTask> tasks = readyTasks.get(host);
+            next = tasks.poll();
+            if (next == null) {
+                readyTasks.remove(host);
+            }
+        }
+        if (next != null) {
+            reserveSlot(next);
+        }
+    }
+
+    private void fetch(PageTask task) {
+        try {
+            fetchPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        reserveNextSlot(task);
+        try {
+            if (WebScraper.isStopped) {
+                finish(task);
+                return;
+            }
+            WebScraper scraper = task.getScraper();
+            Connection.Response response = scraper.fetch(task.getPath());
+            task.setResponse(response);
+            if (scraper.isUnchanged(task.getPath(), response)) {
+                finish(task);
+            } else if (scraper.isRemoved(task.getPath(), response)) {
+                entitySaver.removePage(scraper.getSite(), task.getPath(),
+                        error -> onSaved(task, error));
+            } else {
+                parseQueue.put(task);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            fail(task, e);
+        } finally {
+            fetchPermits.release();
+        }
+    }
+
+    private void parse(PageTask task) throws Exception {
+        Document document = task.getResponse().parse();
+        task.setDocument(document);
+        WebScraper scraper = task.getScraper();
+        for (String path : scraper.findNewPaths(document)) {
+            submit(new PageTask(scraper, path, task.getDepth() + 1));
+        }
+        lemmatizeQueue.put(task);
+    }
+
+    private void lemmatize(PageTask task) throws InterruptedException {
+        WebScraper scraper = task.getScraper();
+        Page page = entitySaver.createPage(task.getDocument(),
+                scraper.getSite(), task.getPath(), task.getResponse());
+        task.setPage(page);
+        task.setLemmas(entitySaver.collectLemmas(page));
+        entitySaver.savePage(page, task.getLemmas(),
+                scraper.isKnown(task.getPath()),
+                error -> onSaved(task, error));
+    }
+
+    private void onSaved(PageTask task, Exception error) {
+        if (error == null) {
+            task.getScraper().getSavedPages().incrementAndGet();
+            finish(task);
+        } else {
+            fail(task, error);
+        }
+    }
+
+    private void fail(PageTask task, Exception e) {
+        e.printStackTrace();
+        task.getScraper().setErrorToSite(task.getPath(), e);
+        finish(task);
+    }
+
+    private void finish(PageTask task) {
+        if (task.getScraper().pageFinished(task)
+                && activeSites.decrementAndGet() == 0) {
+            shutdownNow();
+        }
+    }
+
+    private void startStage(int workers, BlockingQueue<PageTask> queue,
+                            Stage stage) {
+        for (int i = 0; i < workers; i++) {
+            stageExecutor.execute(() -> runStage(queue, stage));
+        }
+    }
+
+    private void runStage(BlockingQueue<PageTask> queue, Stage stage) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                PageTask task = queue.take();
+                if (WebScraper.isStopped) {
+                    finish(task);
+                    continue;
+                }
+                try {
+                    stage.process(task);
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    fail(task, e);
+                }
+            }
+        } catch (InterruptedException ignore) {
+        }
+    }
+
+    private ThreadFactory threadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-"
+                    + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private interface Stage {
+        void process(PageTask task) throws Exception;
+    }
+}
@@ -0,0 +1,48 @@
+package searchengine.services.indexation;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps lemma ids of every site in memory. A site's lemmas are read once,
+ * new lemmas get their id here, so the writer never has to look a lemma
+ * up before inserting or updating it.
+ */
+@Component
+@RequiredArgsConstructor
+public class LemmaDictionary {
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, Map<String, Integer>> siteLemmas = new ConcurrentHashMap<>();
+    private Integer lastId;
+
+    public int getId(int siteId, String lemma) {
+        return siteLemmas.computeIfAbsent(siteId, this::loadSite)
+                .computeIfAbsent(lemma, l -> nextId());
+    }
+
+    public void forgetSite(int siteId) {
+        siteLemmas.remove(siteId);
+    }
+
+    private Map<String, Integer> loadSite(int siteId) {
+        Map<String, Integer> ids = new ConcurrentHashMap<>();
+        jdbcTemplate.query("SELECT id, lemma FROM lemmas WHERE site_id = ?",
+                rs -> {
+                    ids.put(rs.getString("lemma"), rs.getInt("id"));
+                }, siteId);
+        return ids;
+    }
+
+    private synchronized int nextId() {
+        if (lastId == null) {
+            Integer maxId = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(MAX(id), 0) FROM lemmas", Integer.class);
+            lastId = maxId == null ? 0 : maxId;
+        }
+        return ++lastId;
+    }
+}
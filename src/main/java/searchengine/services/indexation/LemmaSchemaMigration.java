@@ -0,0 +1,71 @@
+package searchengine.services.indexation;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+/**
+ * Brings a {@code lemmas} table created by an older version up to the
+ * schema the writer relies on. {@code ddl-auto: update} never changes the
+ * collation of an existing column and cannot add the unique key while
+ * duplicates exist, so both are done here once at startup, after
+ * Hibernate has updated the schema: the column is switched to
+ * {@code utf8mb4_bin}, duplicate lemmas of a site are merged into the one
+ * with the lowest id and the unique key on {@code (site_id, lemma)} is
+ * added. Nothing is done when the table is already up to date.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+public class LemmaSchemaMigration {
+    private static final String COLLATION = "utf8mb4_bin";
+    private static final String DUPLICATES = "(SELECT site_id, lemma, " +
+            "MIN(id) AS keep_id, SUM(frequency) AS total FROM lemmas " +
+            "GROUP BY site_id, lemma HAVING COUNT(*) > 1) d";
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void migrate() {
+        List<String> collations = jdbcTemplate.queryForList("SELECT collation_name " +
+                "FROM information_schema.columns WHERE table_schema = DATABASE() " +
+                "AND table_name = 'lemmas' AND column_name = 'lemma'", String.class);
+        if (collations.isEmpty()) {
+            return;
+        }
+        if (!COLLATION.equals(collations.get(0))) {
+            jdbcTemplate.execute("ALTER TABLE lemmas MODIFY lemma VARCHAR(255) " +
+                    "CHARACTER SET utf8mb4 COLLATE " + COLLATION + " NOT NULL");
+        }
+        if (!hasUniqueKey()) {
+            transactionTemplate.executeWithoutResult(status -> mergeDuplicates());
+            jdbcTemplate.execute("ALTER TABLE lemmas ADD UNIQUE KEY " +
+                    "uk_lemmas_site_lemma (site_id, lemma)");
+        }
+    }
+
+    private boolean hasUniqueKey() {
+        Integer keys = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " +
+                "information_schema.statistics WHERE table_schema = DATABASE() " +
+                "AND table_name = 'lemmas' AND non_unique = 0 " +
+                "AND column_name = 'lemma'", Integer.class);
+        return keys != null && keys > 0;
+    }
+
+    private void mergeDuplicates() {
+        jdbcTemplate.update("UPDATE indexes i JOIN lemmas l ON l.id = i.lemma_id " +
+                "JOIN " + DUPLICATES + " ON d.site_id = l.site_id " +
+                "AND d.lemma = l.lemma SET i.lemma_id = d.keep_id " +
+                "WHERE l.id <> d.keep_id");
+        jdbcTemplate.update("UPDATE lemmas l JOIN " + DUPLICATES +
+                " ON d.keep_id = l.id SET l.frequency = d.total");
+        jdbcTemplate.update("DELETE l FROM lemmas l JOIN " + DUPLICATES +
+                " ON d.site_id = l.site_id AND d.lemma = l.lemma " +
+                "WHERE l.id <> d.keep_id");
+    }
+}
@@ -0,0 +1,27 @@
+package searchengine.services.indexation;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.jsoup.Connection;
+import org.jsoup.nodes.Document;
+import searchengine.model.Page;
+
+import java.util.Map;
+
+@Getter
+@Setter
+@RequiredArgsConstructor
+public class PageTask {
+    private final WebScraper scraper;
+    private final String path;
+    private final int depth;
+    private Connection.Response response;
+    private Document document;
+    private Page page;
+    private Map<String, int[]> lemmas;
+
+    public String getUrl() {
+        return scraper.getSite().getUrl().concat(path);
+    }
+}
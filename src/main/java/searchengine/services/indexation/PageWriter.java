@@ -0,0 +1,254 @@
+package searchengine.services.indexation;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.PipelineSettings;
+import searchengine.model.Page;
+import searchengine.services.index.InvertedIndex;
+import searchengine.services.index.Positions;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Writes pages with their lemmas and indexes from a single background
+ * thread. Pages are collected into batches that are committed when the
+ * batch is full or the flush interval has passed, so crawler threads only
+ * put pages into a queue. Ids are assigned here and lemma ids come from
+ * {@link LemmaDictionary}, which lets pages, lemmas and indexes go to the
+ * database as plain JDBC batches.
+ */
+@Component
+@RequiredArgsConstructor
+public class PageWriter {
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PipelineSettings settings;
+    private final LemmaDictionary lemmaDictionary;
+    private final IndexEpoch indexEpoch;
+    private final InvertedIndex invertedIndex;
+    private BlockingQueue<PendingPage> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+    private boolean idsLoaded;
+    private int lastPageId;
+    private int lastIndexId;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        running = true;
+        writerThread = new Thread(this::run, "page-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writerThread.join(settings.getWriterFlushInterval() * 2);
+    }
+
+    public void submit(Page page, Map<String, int[]> lemmas,
+                       boolean replace, Consumer<Exception> onDone)
+            throws InterruptedException {
+        queue.put(new PendingPage(page, lemmas, replace, onDone));
+    }
+
+    public void delete(Page page, Consumer<Exception> onDone)
+            throws InterruptedException {
+        queue.put(new PendingPage(page, null, true, onDone));
+    }
+
+    private void run() {
+        List<PendingPage> batch = new ArrayList<>();
+        long deadline = 0;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                long wait = batch.isEmpty() ? settings.getWriterFlushInterval()
+                        : deadline - System.currentTimeMillis();
+                PendingPage page = queue.poll(Math.max(wait, 0),
+                        TimeUnit.MILLISECONDS);
+                if (page != null) {
+                    if (batch.isEmpty()) {
+                        deadline = System.currentTimeMillis()
+                                + settings.getWriterFlushInterval();
+                    }
+                    batch.add(page);
+                    queue.drainTo(batch, settings.getWriterBatchSize()
+                            - batch.size());
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (!batch.isEmpty() && (batch.size() >= settings.getWriterBatchSize()
+                    || System.currentTimeMillis() >= deadline || !running)) {
+                flush(batch);
+                batch = new ArrayList<>();
+            }
+        }
+    }
+
+    private void flush(List<PendingPage> batch) {
+        Exception error = null;
+        try {
+            List<RemovedPage> removedPages = new ArrayList<>();
+            transactionTemplate.executeWithoutResult(status ->
+                    write(batch, removedPages));
+            updateIndex(batch, removedPages);
+            indexEpoch.advance(findSiteIds(batch));
+        } catch (Exception e) {
+            e.printStackTrace();
+            error = e;
+        }
+        for (PendingPage page : batch) {
+            page.onDone().accept(error);
+        }
+    }
+
+    private void write(List<PendingPage> batch, List<RemovedPage> removedPages) {
+        loadLastIds();
+        List<PendingPage> inserts = new ArrayList<>();
+        for (PendingPage page : batch) {
+            if (page.replace()) {
+                removedPages.addAll(deletePage(page.page()));
+            }
+            if (page.lemmas() != null) {
+                inserts.add(page);
+            }
+        }
+        if (!inserts.isEmpty()) {
+            insertPages(inserts);
+            saveLemmas(inserts);
+            insertIndexes(inserts);
+        }
+        touchSites(batch);
+    }
+
+    private void loadLastIds() {
+        if (idsLoaded) {
+            return;
+        }
+        lastPageId = findMaxId("pages");
+        lastIndexId = findMaxId("indexes");
+        idsLoaded = true;
+    }
+
+    private int findMaxId(String table) {
+        Integer id = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM "
+                + table, Integer.class);
+        return id == null ? 0 : id;
+    }
+
+    private void updateIndex(List<PendingPage> batch, List<RemovedPage> removedPages) {
+        removedPages.forEach(page -> invertedIndex.removePage(page.siteId(),
+                page.pageId(), page.lemmas()));
+        for (PendingPage page : batch) {
+            if (page.lemmas() != null) {
+                invertedIndex.addPage(page.page().getId(),
+                        page.page().getSite().getId(), page.lemmas());
+            }
+        }
+    }
+
+    private List<RemovedPage> deletePage(Page page) {
+        List<Integer> ids = jdbcTemplate.queryForList("SELECT id FROM pages " +
+                        "WHERE site_id = ? AND path = ?", Integer.class,
+                page.getSite().getId(), page.getPath());
+        List<RemovedPage> removed = new ArrayList<>();
+        for (Integer id : ids) {
+            removed.add(new RemovedPage(page.getSite().getId(), id,
+                    jdbcTemplate.queryForList("SELECT l.lemma FROM indexes i " +
+                            "JOIN lemmas l ON l.id = i.lemma_id WHERE i.page_id = ?",
+                            String.class, id)));
+            jdbcTemplate.update("UPDATE lemmas l JOIN indexes i " +
+                    "ON i.lemma_id = l.id SET l.frequency = l.frequency - 1 " +
+                    "WHERE i.page_id = ?", id);
+            jdbcTemplate.update("DELETE FROM indexes WHERE page_id = ?", id);
+            jdbcTemplate.update("DELETE FROM pages WHERE id = ?", id);
+        }
+        return removed;
+    }
+
+    private void insertPages(List<PendingPage> batch) {
+        for (PendingPage page : batch) {
+            page.page().setId(++lastPageId);
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO pages (id, site_id, path, code, content, " +
+                        "title, text, token_offsets, etag, last_modified, " +
+                        "content_hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                batch, batch.size(),
+                (ps, p) -> {
+                    ps.setInt(1, p.page().getId());
+                    ps.setInt(2, p.page().getSite().getId());
+                    ps.setString(3, p.page().getPath());
+                    ps.setInt(4, p.page().getCode());
+                    ps.setString(5, p.page().getContent());
+                    ps.setString(6, p.page().getTitle());
+                    ps.setString(7, p.page().getText());
+                    ps.setBytes(8, p.page().getTokenOffsets());
+                    ps.setString(9, p.page().getEtag());
+                    ps.setString(10, p.page().getLastModified());
+                    ps.setString(11, p.page().getContentHash());
+                });
+    }
+
+    private void saveLemmas(List<PendingPage> batch) {
+        Map<Integer, Map<String, Integer>> frequencies = new HashMap<>();
+        for (PendingPage page : batch) {
+            Map<String, Integer> siteFrequencies = frequencies.computeIfAbsent(
+                    page.page().getSite().getId(), id -> new HashMap<>());
+            page.lemmas().keySet().forEach(lemma ->
+                    siteFrequencies.merge(lemma, 1, Integer::sum));
+        }
+        List<Object[]> upserts = new ArrayList<>();
+        frequencies.forEach((siteId, siteFrequencies) ->
+                siteFrequencies.forEach((lemma, frequency) -> upserts.add(new Object[]{
+                        lemmaDictionary.getId(siteId, lemma), siteId, lemma, frequency})));
+        jdbcTemplate.batchUpdate("INSERT INTO lemmas (id, site_id, lemma, frequency) " +
+                "VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE " +
+                "frequency = frequency + VALUES(frequency)", upserts);
+    }
+
+    private void insertIndexes(List<PendingPage> batch) {
+        List<Object[]> indexes = new ArrayList<>();
+        for (PendingPage page : batch) {
+            int siteId = page.page().getSite().getId();
+            page.lemmas().forEach((lemma, positions) -> indexes.add(new Object[]{
+                    ++lastIndexId, page.page().getId(),
+                    lemmaDictionary.getId(siteId, lemma), positions.length,
+                    Positions.encode(positions)}));
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO indexes (id, page_id, lemma_id, `rank`, " +
+                "positions) VALUES (?, ?, ?, ?, ?)", indexes);
+    }
+
+    private Set<Integer> findSiteIds(List<PendingPage> batch) {
+        Set<Integer> siteIds = new HashSet<>();
+        batch.forEach(page -> siteIds.add(page.page().getSite().getId()));
+        return siteIds;
+    }
+
+    private void touchSites(List<PendingPage> batch) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> updates = new ArrayList<>();
+        findSiteIds(batch).forEach(id -> updates.add(new Object[]{now, id}));
+        jdbcTemplate.batchUpdate("UPDATE sites SET status_time = ?, last_error = NULL " +
+                "WHERE id = ? AND status <> 'FAILED'", updates);
+    }
+
+    private record RemovedPage(int siteId, int pageId, List<String> lemmas) {
+    }
+
+    private record PendingPage(Page page, Map<String, int[]> lemmas,
+                               boolean replace, Consumer<Exception> onDone) {
+    }
+}
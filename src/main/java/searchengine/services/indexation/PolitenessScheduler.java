@@ -0,0 +1,71 @@
+package searchengine.services.indexation;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.JsoupSettings;
+import searchengine.config.SiteConfig;
+import searchengine.config.SitesList;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out fetch slots per host so that two requests to the same host
+ * are never closer than the configured delay. Waiting is done by a timer
+ * thread, the caller only gets a future that completes when its slot comes.
+ */
+@Component
+@RequiredArgsConstructor
+public class PolitenessScheduler {
+    private final SitesList sitesList;
+    private final JsoupSettings settings;
+    private final Map<String, AtomicLong> nextFetchTimes = new ConcurrentHashMap<>();
+    private final Map<String, Long> delays = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors
+            .newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "politeness-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public CompletableFuture<Void> acquire(String url) {
+        String host = getHost(url);
+        long delay = delays.computeIfAbsent(host, h -> findDelay(url));
+        long wait = reserve(host, delay) - System.currentTimeMillis();
+        if (wait <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> slot = new CompletableFuture<>();
+        timer.schedule(() -> slot.complete(null), wait, TimeUnit.MILLISECONDS);
+        return slot;
+    }
+
+    private long reserve(String host, long delay) {
+        AtomicLong nextFetchTime = nextFetchTimes
+                .computeIfAbsent(host, h -> new AtomicLong());
+        long now = System.currentTimeMillis();
+        return nextFetchTime.accumulateAndGet(now,
+                (next, current) -> Math.max(next, current) + delay) - delay;
+    }
+
+    private long findDelay(String url) {
+        for (SiteConfig site : sitesList.getSites()) {
+            if (site.getDelay() != null
+                    && getHost(site.getUrl()).equals(getHost(url))) {
+                return site.getDelay();
+            }
+        }
+        return settings.getDelay();
+    }
+
+    String getHost(String url) {
+        try {
+            return new URL(url).getHost().toLowerCase();
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+}
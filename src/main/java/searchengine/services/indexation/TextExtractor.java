@@ -0,0 +1,81 @@
+package searchengine.services.indexation;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+
+import java.util.Set;
+
+/**
+ * Collects the visible text of an already parsed page by walking its body
+ * once. Scripts, styles and similar elements are skipped together with
+ * their children, block elements are separated with " · " so that
+ * snippets can still be cut at paragraph boundaries.
+ */
+public final class TextExtractor {
+    private static final String BLOCK_SEPARATOR = " · ";
+    private static final Set<String> SKIPPED_TAGS = Set.of("script", "style",
+            "noscript", "template", "svg", "iframe", "object", "head");
+
+    private TextExtractor() {
+    }
+
+    public static String extract(Document document) {
+        Element body = document.body();
+        if (body == null) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder();
+        NodeTraversor.filter(new NodeFilter() {
+            @Override
+            public FilterResult head(Node node, int depth) {
+                if (node instanceof TextNode textNode) {
+                    appendText(text, textNode.text());
+                } else if (node instanceof Element element) {
+                    if (SKIPPED_TAGS.contains(element.normalName())) {
+                        return FilterResult.SKIP_ENTIRELY;
+                    }
+                    if (element.isBlock() || element.normalName().equals("br")) {
+                        separate(text);
+                    }
+                }
+                return FilterResult.CONTINUE;
+            }
+
+            @Override
+            public FilterResult tail(Node node, int depth) {
+                if (node instanceof Element element && element.isBlock()) {
+                    separate(text);
+                }
+                return FilterResult.CONTINUE;
+            }
+        }, body);
+        if (endsWithSeparator(text)) {
+            text.setLength(text.length() - BLOCK_SEPARATOR.length());
+        }
+        return text.toString().trim();
+    }
+
+    private static void appendText(StringBuilder text, String value) {
+        boolean afterSpace = text.length() == 0
+                || text.charAt(text.length() - 1) == ' ';
+        text.append(afterSpace ? value.stripLeading() : value);
+    }
+
+    private static void separate(StringBuilder text) {
+        if (text.length() > 0 && !endsWithSeparator(text)) {
+            if (text.charAt(text.length() - 1) == ' ') {
+                text.setLength(text.length() - 1);
+            }
+            text.append(BLOCK_SEPARATOR);
+        }
+    }
+
+    private static boolean endsWithSeparator(StringBuilder text) {
+        int start = text.length() - BLOCK_SEPARATOR.length();
+        return start >= 0 && text.indexOf(BLOCK_SEPARATOR, start) == start;
+    }
+}
@@ -1,88 +1,143 @@
 package searchengine.services.indexation;
 
 
+import lombok.Getter;
+import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.select.Elements;
 import searchengine.config.JsoupSettings;
+import searchengine.dto.indexation.PageVersion;
 import searchengine.model.*;
 
-import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 
-public class WebScraper extends RecursiveAction {
+@Getter
+public class WebScraper {
     protected volatile static boolean isStopped = true;
-    private final String path;
     private final Site site;
     private final SiteRepository siteRepo;
-    private final PageRepository pageRepo;
     private final JsoupSettings settings;
-    private final EntitySaver entitySaver;
+    private final CrawlFrontier frontier;
+    private final Map<String, PageVersion> knownPages;
+    private final Runnable onFinish;
+    private final AtomicInteger pendingPages = new AtomicInteger();
+    private final AtomicInteger savedPages = new AtomicInteger();
+    private final Map<String, Integer> pendingPaths = new ConcurrentHashMap<>();
+    private final Set<String> storedPaths = ConcurrentHashMap.newKeySet();
+    private volatile boolean finished;
 
 
-    public WebScraper(Site site, String path,
+    public WebScraper(Site site,
                       SiteRepository siteRepo,
-                      PageRepository pageRepo,
                       JsoupSettings settings,
-                      EntitySaver entitySaver) {
+                      CrawlFrontier frontier,
+                      Map<String, PageVersion> knownPages,
+                      Runnable onFinish) {
         this.site = site;
-        this.path = path;
         this.siteRepo = siteRepo;
-        this.pageRepo = pageRepo;
         this.settings = settings;
-        this.entitySaver = entitySaver;
+        this.frontier = frontier;
+        this.knownPages = knownPages;
+        this.onFinish = onFinish;
     }
 
-    @Override
-    protected void compute() {
-        try {
-            if (pageRepo.existsByPathAndSite(path, site)
-                    || isStopped == true) {
-                return;
-            }
-            Document document = getDocument();
-            entitySaver.indexAndSavePageToDB(document, site, path);
-            Set<WebScraper> actionList = ConcurrentHashMap.newKeySet();
-            Set<String> urls = (getUrls(document));
-            for (String url : urls) {
-                actionList.add(createAction(url));
-            }
-            ForkJoinTask.invokeAll(actionList);
-        } catch (CancellationException ignore) {
-        } catch (Exception e) {
-            e.printStackTrace();
-            setErrorToSite(e);
-        }
+    protected void pageStarted(PageTask task) {
+        pendingPaths.put(task.getPath(), task.getDepth());
+        pendingPages.incrementAndGet();
     }
 
+    protected boolean pageFinished(PageTask task) {
+        pendingPaths.remove(task.getPath());
+        if (pendingPages.decrementAndGet() > 0) {
+            return false;
+        }
+        finished = true;
+        onFinish.run();
+        return true;
+    }
 
-    private WebScraper createAction(String url) throws InterruptedException {
-        String path = url.equals(site.getUrl()) ? "/"
-                : url.replace(site.getUrl(), "");
-        WebScraper action = new WebScraper(
-                site, path, siteRepo,
-                pageRepo, settings, entitySaver);
-        return action;
+    protected boolean finishIfIdle() {
+        if (pendingPages.get() > 0) {
+            return false;
+        }
+        finished = true;
+        onFinish.run();
+        return true;
     }
 
-    private Document getDocument() throws IOException,
-            InterruptedException {
+    protected Connection.Response fetch(String path) throws IOException {
         String url = site.getUrl().concat(path);
-        Thread.sleep(500);
-        return Jsoup.connect(url)
+        Connection connection = Jsoup.connect(url)
                 .userAgent(settings.getUserAgent())
                 .referrer(settings.getReferrer())
                 .ignoreHttpErrors(true)
                 .ignoreContentType(true)
                 .followRedirects(false)
-                .timeout(10_000)
-                .get();
+                .timeout(10_000);
+        PageVersion version = knownPages.get(pagePath(path));
+        if (version != null && version.getEtag() != null) {
+            connection.header("If-None-Match", version.getEtag());
+        }
+        if (version != null && version.getLastModified() != null) {
+            connection.header("If-Modified-Since", version.getLastModified());
+        }
+        return connection.execute().bufferUp();
+    }
+
+    protected boolean isKnown(String path) {
+        String key = pagePath(path);
+        return knownPages.containsKey(key) || storedPaths.contains(key);
+    }
+
+    protected boolean isUnchanged(String path, Connection.Response response) {
+        PageVersion version = knownPages.get(pagePath(path));
+        if (version == null) {
+            return false;
+        }
+        return response.statusCode() == 304
+                || (response.statusCode() < 400 && version.getContentHash() != null
+                && version.getContentHash().equals(hashContent(response)));
+    }
+
+    protected boolean isRemoved(String path, Connection.Response response) {
+        return isKnown(path) && (response.statusCode() == 404
+                || response.statusCode() == 410);
+    }
+
+    protected static String hashContent(Connection.Response response) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest
+                    .digest(response.bodyAsBytes()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String pagePath(String path) {
+        return path.isBlank() ? "/" : path;
+    }
+
+    protected Set<String> findNewPaths(Document document) {
+        Set<String> paths = new HashSet<>();
+        for (String url : getUrls(document)) {
+            String path = url.equals(site.getUrl()) ? "/"
+                    : url.replace(site.getUrl(), "");
+            if (frontier.claim(path)) {
+                paths.add(path);
+            }
+        }
+        return paths;
     }
 
     private Set<String> getUrls(Document document) {
@@ -103,9 +158,8 @@ public class WebScraper extends RecursiveAction {
         return !url.matches(regex);
     }
 
-    private void setErrorToSite(Exception e) {
-        Optional<Site> optSite = siteRepo
-                .findFirstByUrl(site.getUrl());
+    protected void setErrorToSite(String path, Exception e) {
+        Optional<Site> optSite = siteRepo.findById(site.getId());
         if (optSite.isPresent()) {
             optSite.get().setStatus(Status.FAILED);
             optSite.get().setLastError("Произошла ошибка " +
@@ -115,4 +169,3 @@ public class WebScraper extends RecursiveAction {
         }
     }
 }
-
@@ -6,5 +6,5 @@ import java.util.Set;
 public interface LemmaFinder {
     Map<String, Integer> collectLemmas(String text);
     Set<String> getLemmaSet(String text);
-    Map<String, Set<String>> collectLemmasAndWords(String text);
+    TextAnalysis analyze(String text);
 }
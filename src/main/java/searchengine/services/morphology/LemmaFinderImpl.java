@@ -3,6 +3,9 @@ package searchengine.services.morphology;
 import org.apache.lucene.morphology.LuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
 import org.springframework.stereotype.Service;
+import searchengine.config.MorphologySettings;
+import searchengine.dto.statistics.CacheStatistics;
+import searchengine.services.index.Positions;
 
 import java.io.IOException;
 import java.util.*;
@@ -11,78 +14,74 @@ import java.util.*;
 public class LemmaFinderImpl implements LemmaFinder {
     private final LuceneMorphology luceneMorphology = new RussianLuceneMorphology();
     private final String[] particlesNames = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ"};
+    private final MorphologyCache cache;
+    private final ThreadLocal<TermCounter> termCounters = ThreadLocal
+            .withInitial(TermCounter::new);
 
-    public LemmaFinderImpl() throws IOException {
+    public LemmaFinderImpl(MorphologySettings settings) throws IOException {
+        cache = new MorphologyCache(settings.getCacheSize());
     }
 
     @Override
     public Map<String, Integer> collectLemmas(String text) {
-        String[] words = arrayContainsRussianWords(text);
-        HashMap<String, Integer> lemmas = new HashMap<>();
-        for (String word : words) {
-            if (isWrongWord(word)) {
-                continue;
+        TermCounter counter = termCounters.get();
+        counter.clear();
+        RussianTokenizer.tokenize(text, (word, start, end) -> {
+            String normalWord = findLemma(word);
+            if (normalWord != null) {
+                counter.add(normalWord);
             }
-            List<String> normalForms = luceneMorphology
-                    .getNormalForms(word);
-            if(normalForms.isEmpty()){
-                continue;
+        });
+        return counter.toMap();
+    }
+
+    @Override
+    public TextAnalysis analyze(String text) {
+        TermCounter counter = termCounters.get();
+        counter.clear();
+        int[][] offsets = {new int[256]};
+        int[] tokens = {0};
+        RussianTokenizer.tokenize(text, (word, start, end) -> {
+            if (tokens[0] == offsets[0].length) {
+                offsets[0] = Arrays.copyOf(offsets[0], tokens[0] * 2);
             }
-            String normalWord = normalForms.get(0);
-            if (lemmas.containsKey(normalWord)) {
-                lemmas.put(normalWord, lemmas.get(normalWord) + 1);
-            } else {
-                lemmas.put(normalWord, 1);
+            String normalWord = findLemma(word);
+            if (normalWord != null) {
+                counter.add(normalWord, tokens[0]);
             }
-        }
-        return lemmas;
+            offsets[0][tokens[0]++] = start;
+        });
+        return new TextAnalysis(counter.toPositions(),
+                Positions.encodeOffsets(offsets[0], tokens[0]));
     }
 
     @Override
     public Set<String> getLemmaSet(String text) {
-        String[] words = arrayContainsRussianWords(text);
         Set<String> lemmas = new HashSet<>();
-        for (String word : words) {
-            if (isWrongWord(word)) {
-                continue;
+        RussianTokenizer.tokenize(text, (word, start, end) -> {
+            String normalWord = findLemma(word);
+            if (normalWord != null) {
+                lemmas.add(normalWord);
             }
-            List<String> normalForms = luceneMorphology
-                    .getNormalForms(word);
-            if(normalForms.isEmpty()){
-                continue;
-            }
-            String normalWord = normalForms.get(0);
-            lemmas.add(normalWord);
-        }
+        });
         return lemmas;
     }
 
-    @Override
-    public Map<String, Set<String>> collectLemmasAndWords(String text) {
-        String[] words = arrayContainsRussianWords(text);
-        HashMap<String, Set<String>> lemmas = new HashMap<>();
-        for (String word : words) {
-            if (isWrongWord(word)) {
-                continue;
-            }
-            List<String> normalForms = luceneMorphology.getNormalForms(word);
-            if(normalForms.isEmpty()){
-                continue;
-            }
-            String normalWord = normalForms.get(0);
-            if (lemmas.containsKey(normalWord)) {
-                Set<String> wordsSet = new HashSet<>(lemmas.get(normalWord));
-                wordsSet.add(word);
-                lemmas.put(normalWord, wordsSet);
-            } else {
-                lemmas.put(normalWord, new HashSet<>() {{
-                    add(word);
-                }});
-            }
-        }
-        return lemmas;
+    public CacheStatistics getCacheStatistics() {
+        return cache.getStatistics();
+    }
+
+    private String findLemma(String word) {
+        return cache.getLemma(word, this::lookUpLemma);
     }
 
+    private String lookUpLemma(String word) {
+        if (isWrongWord(word)) {
+            return null;
+        }
+        List<String> normalForms = luceneMorphology.getNormalForms(word);
+        return normalForms.isEmpty() ? null : normalForms.get(0);
+    }
 
     private boolean anyWordBaseBelongToParticle(List<String> wordBaseForms) {
         return wordBaseForms.stream()
@@ -90,9 +89,6 @@ public class LemmaFinderImpl implements LemmaFinder {
     }
 
     private boolean isWrongWord(String word) {
-        if (word.isBlank()) {
-            return true;
-        }
         List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
         return anyWordBaseBelongToParticle(wordBaseForms);
     }
@@ -107,14 +103,5 @@ public class LemmaFinderImpl implements LemmaFinder {
         }
         return false;
     }
-
-    private String[] arrayContainsRussianWords(String text) {
-        return text.toLowerCase(Locale.ROOT)
-                .replaceAll("ё", "е")
-                .replaceAll("Ё", "Е")
-                .replaceAll("([^а-я\\s])", " ")
-                .trim()
-                .split("\\s+");
-    }
 }
 
@@ -0,0 +1,90 @@
+package searchengine.services.morphology;
+
+import searchengine.dto.statistics.CacheStatistics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Word form to lemma cache in front of the morphology dictionary. Entries
+ * are spread over independently locked LRU segments, so indexing threads
+ * and searches rarely wait for each other. A form without a lemma, e.g.
+ * a preposition, is stored as an empty string.
+ */
+public class MorphologyCache {
+    private static final int SEGMENTS = 32;
+    private static final String NO_LEMMA = "";
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public MorphologyCache(int capacity) {
+        this.capacity = capacity;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(capacity / SEGMENTS, 1));
+        }
+    }
+
+    public String getLemma(String word, Function<String, String> lookup) {
+        if (capacity <= 0) {
+            return lookup.apply(word);
+        }
+        Segment segment = segments[(word.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+        String lemma;
+        synchronized (segment) {
+            lemma = segment.get(word);
+        }
+        if (lemma != null) {
+            hits.increment();
+            return lemma.isEmpty() ? null : lemma;
+        }
+        misses.increment();
+        lemma = lookup.apply(word);
+        synchronized (segment) {
+            segment.put(word, lemma == null ? NO_LEMMA : lemma);
+        }
+        return lemma;
+    }
+
+    public CacheStatistics getStatistics() {
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.setName("morphology");
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        statistics.setSize(size);
+        statistics.setCapacity(capacity);
+        statistics.setHits(hits.sum());
+        statistics.setMisses(misses.sum());
+        statistics.setEvictions(evictions.sum());
+        long requests = statistics.getHits() + statistics.getMisses();
+        statistics.setHitRate(requests == 0 ? 0
+                : (double) statistics.getHits() / requests);
+        return statistics;
+    }
+
+    private class Segment extends LinkedHashMap<String, String> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package searchengine.services.morphology;
+
+import java.util.Arrays;
+
+/**
+ * Splits text into Russian words in one pass over the characters. Letters
+ * are lower-cased and ё is folded to е on the fly, everything that is not
+ * a Cyrillic letter separates words. Each word is handed to the consumer
+ * together with its position in the source text.
+ */
+public final class RussianTokenizer {
+
+    private RussianTokenizer() {
+    }
+
+    public static void tokenize(CharSequence text, TokenConsumer consumer) {
+        char[] buffer = new char[32];
+        int length = 0;
+        int start = 0;
+        for (int i = 0, n = text.length(); i <= n; i++) {
+            char c = i < n ? fold(text.charAt(i)) : ' ';
+            if (c >= 'а' && c <= 'я') {
+                if (length == 0) {
+                    start = i;
+                }
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
+                buffer[length++] = c;
+            } else if (length > 0) {
+                consumer.accept(new String(buffer, 0, length), start, i);
+                length = 0;
+            }
+        }
+    }
+
+    private static char fold(char c) {
+        if (c >= 'А' && c <= 'Я') {
+            return (char) (c + ('а' - 'А'));
+        }
+        if (c == 'ё' || c == 'Ё') {
+            return 'е';
+        }
+        return c;
+    }
+
+    @FunctionalInterface
+    public interface TokenConsumer {
+        void accept(String token, int start, int end);
+    }
+}
@@ -0,0 +1,111 @@
+package searchengine.services.morphology;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts terms of one page in an open-addressing table of strings and
+ * primitive ints, so counting a token neither boxes nor allocates. When
+ * positions are given they are collected per term in int arrays.
+ * Meant to be kept per thread and cleared between pages: clearing only
+ * touches the slots that were used and keeps the grown table.
+ */
+public class TermCounter {
+    private String[] terms = new String[1024];
+    private int[] counts = new int[1024];
+    private int[][] positions = new int[1024][];
+    private int[] usedSlots = new int[512];
+    private int size;
+
+    public void add(String term) {
+        counts[findSlot(term)]++;
+    }
+
+    public void add(String term, int position) {
+        int slot = findSlot(term);
+        if (positions[slot] == null) {
+            positions[slot] = new int[8];
+        } else if (positions[slot].length == counts[slot]) {
+            positions[slot] = Arrays.copyOf(positions[slot], counts[slot] * 2);
+        }
+        positions[slot][counts[slot]++] = position;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> map = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            map.put(terms[usedSlots[i]], counts[usedSlots[i]]);
+        }
+        return map;
+    }
+
+    public Map<String, int[]> toPositions() {
+        Map<String, int[]> map = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            int slot = usedSlots[i];
+            map.put(terms[slot], Arrays.copyOf(positions[slot], counts[slot]));
+        }
+        return map;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            terms[usedSlots[i]] = null;
+            counts[usedSlots[i]] = 0;
+        }
+        size = 0;
+    }
+
+    private int findSlot(String term) {
+        int mask = terms.length - 1;
+        int slot = spread(term.hashCode()) & mask;
+        while (terms[slot] != null) {
+            if (terms[slot].equals(term)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size * 2 + 2 >= terms.length) {
+            grow();
+            return findSlot(term);
+        }
+        terms[slot] = term;
+        counts[slot] = 0;
+        usedSlots[size++] = slot;
+        return slot;
+    }
+
+    private void grow() {
+        String[] oldTerms = terms;
+        int[] oldCounts = counts;
+        int[][] oldPositions = positions;
+        int[] oldSlots = usedSlots;
+        int oldSize = size;
+        terms = new String[oldTerms.length * 2];
+        counts = new int[oldTerms.length * 2];
+        positions = new int[oldTerms.length * 2][];
+        usedSlots = new int[oldTerms.length];
+        size = 0;
+        int mask = terms.length - 1;
+        for (int i = 0; i < oldSize; i++) {
+            String term = oldTerms[oldSlots[i]];
+            int slot = spread(term.hashCode()) & mask;
+            while (terms[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            terms[slot] = term;
+            counts[slot] = oldCounts[oldSlots[i]];
+            positions[slot] = oldPositions[oldSlots[i]];
+            usedSlots[size++] = slot;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
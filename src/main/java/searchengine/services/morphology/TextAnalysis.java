@@ -0,0 +1,11 @@
+package searchengine.services.morphology;
+
+import java.util.Map;
+
+/**
+ * Lemmas of a text with the numbers of the tokens they occur at, and the
+ * character offset of every token. Tokens without a lemma still get a
+ * number, so the distance between two positions is the distance in words.
+ */
+public record TextAnalysis(Map<String, int[]> positions, byte[] tokenOffsets) {
+}
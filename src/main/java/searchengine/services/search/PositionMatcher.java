@@ -0,0 +1,83 @@
+package searchengine.services.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Checks phrases and measures how close query lemmas are on a page using
+ * only their token positions.
+ */
+public final class PositionMatcher {
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private PositionMatcher() {
+    }
+
+    public static boolean containsPhrase(Map<String, int[]> positions,
+                                         SearchQuery.Phrase phrase) {
+        int[] anchors = positions.getOrDefault(phrase.lemmas().get(0),
+                NO_POSITIONS);
+        for (int anchor : anchors) {
+            if (followsAnchor(positions, phrase, anchor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Closeness of the lemmas on the page, from 1 when they stand next to
+     * each other down towards 0 as the shortest span holding all of them
+     * grows. A page where some lemma has no positions gets 0.
+     */
+    public static float closeness(Map<String, int[]> positions,
+                                  Collection<String> lemmas) {
+        if (lemmas.size() < 2) {
+            return 1;
+        }
+        int[][] lists = new int[lemmas.size()][];
+        int n = 0;
+        for (String lemma : lemmas) {
+            lists[n] = positions.getOrDefault(lemma, NO_POSITIONS);
+            if (lists[n++].length == 0) {
+                return 0;
+            }
+        }
+        int span = findShortestSpan(lists);
+        return (float) (n - 1) / Math.max(span, n - 1);
+    }
+
+    private static boolean followsAnchor(Map<String, int[]> positions,
+                                         SearchQuery.Phrase phrase, int anchor) {
+        for (int i = 1; i < phrase.lemmas().size(); i++) {
+            int[] lemmaPositions = positions.getOrDefault(phrase.lemmas().get(i),
+                    NO_POSITIONS);
+            if (Arrays.binarySearch(lemmaPositions,
+                    anchor + phrase.offsets().get(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int findShortestSpan(int[][] lists) {
+        int[] heads = new int[lists.length];
+        int best = Integer.MAX_VALUE;
+        while (true) {
+            int min = 0;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < lists.length; i++) {
+                int position = lists[i][heads[i]];
+                if (position < lists[min][heads[min]]) {
+                    min = i;
+                }
+                max = Math.max(max, position);
+            }
+            best = Math.min(best, max - lists[min][heads[min]]);
+            if (++heads[min] == lists[min].length) {
+                return best;
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package searchengine.services.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.services.morphology.LemmaFinderImpl;
+
+import java.util.*;
+
+/**
+ * Turns the query string into a {@link SearchQuery}. Text between quotes
+ * becomes a phrase, an unclosed quote runs to the end of the query.
+ * Phrases are numbered with the same token scheme as pages are indexed
+ * with, so their offsets can be compared with stored positions.
+ */
+@Component
+@RequiredArgsConstructor
+public class QueryParser {
+    private static final String QUOTES = "\"«»“”„";
+    private final LemmaFinderImpl lemmaFinder;
+
+    public SearchQuery parse(String query) {
+        List<SearchQuery.Phrase> phrases = new ArrayList<>();
+        StringBuilder segment = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (QUOTES.indexOf(c) < 0) {
+                segment.append(c);
+                continue;
+            }
+            if (quoted) {
+                addPhrase(segment.toString(), phrases);
+            }
+            segment.setLength(0);
+            quoted = !quoted;
+        }
+        if (quoted) {
+            addPhrase(segment.toString(), phrases);
+        }
+        return new SearchQuery(Set.copyOf(lemmaFinder.getLemmaSet(query)),
+                List.copyOf(phrases));
+    }
+
+    private void addPhrase(String text, List<SearchQuery.Phrase> phrases) {
+        List<Map.Entry<Integer, String>> tokens = new ArrayList<>();
+        lemmaFinder.analyze(text).positions().forEach((lemma, positions) -> {
+            for (int position : positions) {
+                tokens.add(Map.entry(position, lemma));
+            }
+        });
+        if (tokens.size() < 2) {
+            return;
+        }
+        tokens.sort(Map.Entry.comparingByKey());
+        int first = tokens.get(0).getKey();
+        List<String> lemmas = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        for (Map.Entry<Integer, String> token : tokens) {
+            lemmas.add(token.getValue());
+            offsets.add(token.getKey() - first);
+        }
+        phrases.add(new SearchQuery.Phrase(List.copyOf(lemmas),
+                List.copyOf(offsets)));
+    }
+}
@@ -0,0 +1,61 @@
+package searchengine.services.search;
+
+import lombok.Getter;
+import searchengine.services.index.PageMatch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * All pages matching a query, best first, so the count is exact and any
+ * window can be served from one cached entry. Pages are kept as plain
+ * arrays so that a cached result costs a few bytes per page. Relevance is
+ * the absolute one, it is normalized by the best page when a window is
+ * rendered.
+ */
+@Getter
+public class RankedPages {
+    private final List<String> lemmas;
+    private final String error;
+    private final int[] pageIds;
+    private final int[] siteIds;
+    private final float[] relevance;
+
+    public RankedPages(List<String> lemmas, List<PageMatch> ranked) {
+        this.lemmas = lemmas;
+        this.error = null;
+        pageIds = new int[ranked.size()];
+        siteIds = new int[ranked.size()];
+        relevance = new float[ranked.size()];
+        for (int i = 0; i < ranked.size(); i++) {
+            pageIds[i] = ranked.get(i).pageId();
+            siteIds[i] = ranked.get(i).siteId();
+            relevance[i] = ranked.get(i).relevance();
+        }
+    }
+
+    public RankedPages(String error) {
+        this.lemmas = List.of();
+        this.error = error;
+        pageIds = new int[0];
+        siteIds = new int[0];
+        relevance = new float[0];
+    }
+
+    public float maxRelevance() {
+        return relevance.length == 0 ? 0 : relevance[0];
+    }
+
+    public int size() {
+        return pageIds.length;
+    }
+
+    public List<PageMatch> window(int offset, int limit) {
+        List<PageMatch> window = new ArrayList<>();
+        int end = (int) Math.min((long) offset + limit, pageIds.length);
+        for (int i = Math.max(offset, 0); i < end; i++) {
+            window.add(new PageMatch(pageIds[i], siteIds[i], relevance[i]));
+        }
+        return window;
+    }
+}
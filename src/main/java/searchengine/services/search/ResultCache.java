@@ -0,0 +1,94 @@
+package searchengine.services.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.dto.statistics.CacheStatistics;
+import searchengine.services.indexation.IndexEpoch;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ranked results of recent queries, keyed by the lemmas and phrases of
+ * the query and the site filter. An entry remembers the epochs of the sites it was
+ * computed from and is dropped as soon as one of them changes, when the
+ * set of published sites changes or when it gets older than the TTL.
+ * The least recently used entry is evicted once the cache is full.
+ */
+@Component
+@RequiredArgsConstructor
+public class ResultCache {
+    private final SearchSettings settings;
+    private final IndexEpoch indexEpoch;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() > settings.getResultCacheSize()) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public RankedPages get(SearchQuery query, String site, Set<Integer> siteIds) {
+        Key key = new Key(query, site);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && isValid(entry, siteIds)) {
+                hits.incrementAndGet();
+                return entry.pages();
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(SearchQuery query, String site,
+                    Map<Integer, Long> siteEpochs, RankedPages pages) {
+        if (settings.getResultCacheSize() <= 0) {
+            return;
+        }
+        Entry entry = new Entry(pages, siteEpochs,
+                System.currentTimeMillis() + settings.getResultCacheTtl());
+        synchronized (entries) {
+            entries.put(new Key(query, site), entry);
+        }
+    }
+
+    public CacheStatistics getStatistics() {
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.setName("search-results");
+        synchronized (entries) {
+            statistics.setSize(entries.size());
+        }
+        statistics.setCapacity(settings.getResultCacheSize());
+        statistics.setHits(hits.get());
+        statistics.setMisses(misses.get());
+        statistics.setEvictions(evictions.get());
+        long requests = hits.get() + misses.get();
+        statistics.setHitRate(requests == 0 ? 0 : (double) hits.get() / requests);
+        return statistics;
+    }
+
+    private boolean isValid(Entry entry, Set<Integer> siteIds) {
+        return entry.expiresAt() > System.currentTimeMillis()
+                && entry.siteEpochs().keySet().equals(siteIds)
+                && entry.siteEpochs().equals(indexEpoch.snapshot(siteIds));
+    }
+
+    private record Key(SearchQuery query, String site) {
+    }
+
+    private record Entry(RankedPages pages, Map<Integer, Long> siteEpochs,
+                         long expiresAt) {
+    }
+}
@@ -0,0 +1,15 @@
+package searchengine.services.search;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lemmas of a query and the phrases that were quoted in it. A phrase keeps
+ * its lemmas in text order with the token distance of each one from the
+ * first, stop words included, so it can be checked against positions.
+ */
+public record SearchQuery(Set<String> lemmas, List<Phrase> phrases) {
+
+    public record Phrase(List<String> lemmas, List<Integer> offsets) {
+    }
+}
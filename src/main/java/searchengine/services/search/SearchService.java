@@ -1,7 +1,10 @@
 package searchengine.services.search;
 
+import searchengine.dto.statistics.Data;
 import searchengine.dto.statistics.Response;
 
+import java.util.function.Consumer;
+
 public interface SearchService {
     String[] errors = {
             "Данного сайта нет в списке.",
@@ -13,4 +16,8 @@ public interface SearchService {
     Response searchAndGetResponse(String query, String site,
                                   Integer offset, Integer limit);
 
+    void searchAndStream(String query, String site,
+                         Integer offset, Integer limit,
+                         Consumer<Response> onHeader, Consumer<Data> onData);
+
 }
@@ -1,65 +1,246 @@
 package searchengine.services.search;
 
 import lombok.RequiredArgsConstructor;
-import org.jsoup.Jsoup;
-import org.jsoup.safety.Safelist;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
+import org.springframework.web.util.HtmlUtils;
+import searchengine.config.SearchSettings;
 import searchengine.config.SitesList;
+import searchengine.dto.search.PageText;
 import searchengine.dto.statistics.Data;
 import searchengine.dto.statistics.Response;
-import searchengine.model.Lemma;
-import searchengine.model.Page;
 import searchengine.model.Site;
-import searchengine.repositories.IndexRepository;
-import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
-import searchengine.services.morphology.LemmaFinderImpl;
+import searchengine.services.index.CorpusStatistics;
+import searchengine.services.index.InvertedIndex;
+import searchengine.services.index.PageMatch;
+import searchengine.services.indexation.IndexEpoch;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 @Service
 @RequiredArgsConstructor
 public class SearchServiceImpl implements SearchService {
-    private Float maxRelevanceValue;
+    private static final Comparator<PageMatch> RANKING_ORDER = Comparator
+            .comparing(PageMatch::relevance).reversed()
+            .thenComparing(PageMatch::pageId);
+    private static final float PROXIMITY_WEIGHT = 0.5f;
+    private static final int STREAM_CHUNK_SIZE = 5;
     private final SiteRepository siteRepo;
     private final PageRepository pageRepo;
-    private final LemmaRepository lemmaRepo;
-    private final IndexRepository indexRepo;
+    private final InvertedIndex invertedIndex;
+    private final IndexEpoch indexEpoch;
+    private final ResultCache resultCache;
     private final SitesList sitesList;
-    private final LemmaFinderImpl lemmaFinder;
+    private final SearchSettings settings;
+    private final QueryParser queryParser;
     private final SnippetCreator snippetCreator;
+    private ExecutorService shardExecutor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        shardExecutor = new ThreadPoolExecutor(settings.getShardThreads(),
+                settings.getShardThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(settings.getShardThreads() * 16), r -> {
+            Thread thread = new Thread(r, "shard-search-"
+                    + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        shardExecutor.shutdownNow();
+    }
 
     @Override
     public Response searchAndGetResponse(String query, String site,
                                          Integer offset, Integer limit) {
+        PreparedSearch search = prepareSearch(query, site, offset, limit);
+        if (search.response().isResult()) {
+            List<Data> dataList = new ArrayList<>();
+            renderData(search, Math.max(search.window().size(), 1), dataList::add);
+            search.response().setData(dataList);
+        }
+        return search.response();
+    }
+
+    @Override
+    public void searchAndStream(String query, String site,
+                                Integer offset, Integer limit,
+                                Consumer<Response> onHeader,
+                                Consumer<Data> onData) {
+        PreparedSearch search = prepareSearch(query, site, offset, limit);
+        onHeader.accept(search.response());
+        if (search.response().isResult()) {
+            renderData(search, STREAM_CHUNK_SIZE, onData);
+        }
+    }
+
+    private PreparedSearch prepareSearch(String query, String site,
+                                         Integer offset, Integer limit) {
         Response response = new Response();
-        Set<String> lemmas = lemmaFinder.getLemmaSet(query
-                .replaceAll("[Ёё]", "е"));
-        List<Lemma> sortedLemmas = findLemmasInDBAndSort(lemmas);
+        SearchQuery searchQuery = queryParser.parse(query);
         if (site != null && !siteIsPresent(site)) {
             response.setError(errors[0]);
-            return response;
+            return new PreparedSearch(response);
         }
-        if (CollectionUtils.isEmpty(lemmas)) {
+        if (CollectionUtils.isEmpty(searchQuery.lemmas())) {
             response.setError(errors[1]);
-            return response;
+            return new PreparedSearch(response);
+        }
+        Map<Integer, Site> sites = new HashMap<>();
+        getSites(site).forEach(s -> sites.put(s.getId(), s));
+        RankedPages ranked = resultCache.get(searchQuery, site, sites.keySet());
+        if (ranked == null) {
+            Map<Integer, Long> siteEpochs = indexEpoch.snapshot(sites.keySet());
+            ranked = rankPages(searchQuery, sites.keySet());
+            resultCache.put(searchQuery, site, siteEpochs, ranked);
         }
-        if (sortedLemmas == null) {
-            response.setError(errors[2]);
-            return response;
+        if (ranked.getError() != null) {
+            response.setError(ranked.getError());
+            return new PreparedSearch(response);
         }
-        return createResponseWithData(limit, offset,
-                sortedLemmas, site);
+        response.setCount(ranked.size());
+        response.setResult(true);
+        return new PreparedSearch(response, ranked.getLemmas(),
+                ranked.window(offset, limit), ranked.maxRelevance(), sites);
     }
 
-    private List<Lemma> findLemmasInDBAndSort(Set<String> lemmas) {
-        List<Lemma> sortedLemmas = lemmaRepo
-                .findByLemmas(lemmas);
-        if (sortedLemmas.size() < lemmas.size()) {
-            return null;
+    private RankedPages rankPages(SearchQuery query, Set<Integer> siteIds) {
+        Map<String, Integer> frequencies = countPages(query.lemmas(), siteIds);
+        if (frequencies.containsValue(0)) {
+            return new RankedPages(errors[2]);
         }
+        List<String> sortedLemmas = sortLemmas(frequencies);
+        List<String> requiredLemmas = pickRequiredLemmas(sortedLemmas,
+                frequencies, invertedIndex.countPages(siteIds));
+        CorpusStatistics.Scorer scorer = invertedIndex.scorer(sortedLemmas,
+                siteIds);
+        List<List<PageMatch>> results = searchShards(siteIds, siteId -> searchShard(
+                siteId, query, sortedLemmas, requiredLemmas, scorer));
+        List<PageMatch> matches = new ArrayList<>();
+        results.forEach(matches::addAll);
+        if (matches.isEmpty()) {
+            return new RankedPages(errors[2]);
+        }
+        matches.sort(RANKING_ORDER);
+        return new RankedPages(sortedLemmas, matches);
+    }
+
+    /**
+     * Runs the search on every site shard. More than one shard fan out to
+     * the shard executor, so the query takes as long as its largest site.
+     */
+    private List<List<PageMatch>> searchShards(Set<Integer> siteIds,
+                                               IntFunction<List<PageMatch>> search) {
+        if (siteIds.size() == 1) {
+            return List.of(search.apply(siteIds.iterator().next()));
+        }
+        List<Future<List<PageMatch>>> futures = new ArrayList<>();
+        for (int siteId : siteIds) {
+            futures.add(shardExecutor.submit(() -> search.apply(siteId)));
+        }
+        List<List<PageMatch>> results = new ArrayList<>();
+        try {
+            for (Future<List<PageMatch>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    private List<PageMatch> searchShard(int siteId, SearchQuery query,
+                                        List<String> sortedLemmas,
+                                        List<String> requiredLemmas,
+                                        CorpusStatistics.Scorer scorer) {
+        List<PageMatch> matches = invertedIndex.findPages(siteId,
+                requiredLemmas, sortedLemmas, scorer);
+        if (!matches.isEmpty() && !query.phrases().isEmpty()) {
+            matches = matchPhrases(query, matches);
+        }
+        matches.sort(RANKING_ORDER);
+        if (requiredLemmas.size() < 2) {
+            return matches;
+        }
+        int preselected = Math.min(matches.size(), settings.getMaxRankedPages());
+        List<PageMatch> ranked = new ArrayList<>(matches.size());
+        ranked.addAll(scoreProximity(requiredLemmas,
+                matches.subList(0, preselected)));
+        for (PageMatch match : matches.subList(preselected, matches.size())) {
+            ranked.add(new PageMatch(match.pageId(), match.siteId(),
+                    match.relevance() * (1 - PROXIMITY_WEIGHT)));
+        }
+        return ranked;
+    }
+
+    private List<PageMatch> matchPhrases(SearchQuery query,
+                                         List<PageMatch> matches) {
+        Set<String> lemmas = new HashSet<>();
+        query.phrases().forEach(phrase -> lemmas.addAll(phrase.lemmas()));
+        Map<Integer, Map<String, int[]>> positions = invertedIndex
+                .findPositions(lemmas, matches);
+        List<PageMatch> matched = new ArrayList<>();
+        for (PageMatch match : matches) {
+            Map<String, int[]> pagePositions = positions
+                    .getOrDefault(match.pageId(), Map.of());
+            if (query.phrases().stream().allMatch(phrase -> PositionMatcher
+                    .containsPhrase(pagePositions, phrase))) {
+                matched.add(match);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Rescores the preselected best pages by how close the required
+     * lemmas stand. Every page contains all of them, so a page is never
+     * penalized for an optional lemma it lacks. Pages after the preselected
+     * ones get the lowest closeness, which keeps them below all of these.
+     */
+    private List<PageMatch> scoreProximity(List<String> requiredLemmas,
+                                           List<PageMatch> matches) {
+        Map<Integer, Map<String, int[]>> positions = invertedIndex
+                .findPositions(requiredLemmas, matches);
+        List<PageMatch> scored = new ArrayList<>();
+        for (PageMatch match : matches) {
+            float closeness = PositionMatcher.closeness(positions
+                    .getOrDefault(match.pageId(), Map.of()), requiredLemmas);
+            scored.add(new PageMatch(match.pageId(), match.siteId(),
+                    match.relevance() * (1 - PROXIMITY_WEIGHT
+                            + PROXIMITY_WEIGHT * closeness)));
+        }
+        scored.sort(RANKING_ORDER);
+        return scored;
+    }
+
+    private Map<String, Integer> countPages(Set<String> lemmas,
+                                            Set<Integer> siteIds) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String lemma : lemmas) {
+            frequencies.put(lemma, invertedIndex.countPages(lemma, siteIds));
+        }
+        return frequencies;
+    }
+
+    private List<String> sortLemmas(Map<String, Integer> frequencies) {
+        List<String> sortedLemmas = new ArrayList<>(frequencies.keySet());
+        sortedLemmas.sort(Comparator.comparing(frequencies::get));
         return sortedLemmas;
     }
 
@@ -72,108 +253,87 @@ public class SearchServiceImpl implements SearchService {
                         .getUrl()).equals(site));
     }
 
-    private Response createResponseWithData(int limit, int offset,
-                                            List<Lemma> sortedLemmas,
-                                            String site) {
-        int endIndex = offset + limit;
-        Response response = new Response();
-        Set<Page> pages = findPages(sortedLemmas, site);
-        if (CollectionUtils.isEmpty(pages)) {
-            response.setError(errors[3]);
-            return response;
-        }
-        List<Data> dataList = createDataList(sortedLemmas, pages);
-        response.setCount(dataList.size());
-        response.setResult(true);
-        response.setData(dataList.subList(offset,
-                Math.min(endIndex, dataList.size())));
-        return response;
-    }
-
-    private List<Data> createDataList(List<Lemma> sortedLemmas,
-                                      Set<Page> pages) {
-        List<Data> dataList = new ArrayList<>();
-        for (Page page : pages) {
-            String content = page.getContent();
-            Data data = collectData(page, content, sortedLemmas);
-            dataList.add(data);
+    /**
+     * Renders the window chunk by chunk: texts of a chunk are loaded with
+     * one query and every page goes to the sink as soon as its snippet is
+     * built.
+     */
+    private void renderData(PreparedSearch search, int chunkSize,
+                            Consumer<Data> sink) {
+        List<PageMatch> window = search.window();
+        for (int from = 0; from < window.size(); from += chunkSize) {
+            List<PageMatch> chunk = window.subList(from,
+                    Math.min(from + chunkSize, window.size()));
+            List<Integer> pageIds = chunk.stream().map(PageMatch::pageId).toList();
+            Map<Integer, PageText> texts = new HashMap<>();
+            pageRepo.findTextsByIds(pageIds)
+                    .forEach(text -> texts.put(text.getId(), text));
+            Map<Integer, Map<String, int[]>> positions = invertedIndex
+                    .findPositions(search.lemmas(), chunk);
+            for (PageMatch match : chunk) {
+                PageText text = texts.get(match.pageId());
+                if (text != null) {
+                    sink.accept(collectData(text, search.sites().get(match.siteId()),
+                            match, search.maxRelevance(),
+                            positions.getOrDefault(match.pageId(), Map.of())));
+                }
+            }
         }
-        dataList.sort(Collections.reverseOrder());
-        return dataList;
     }
 
     private List<Site> getSites(String site) {
         List<Site> sites = new ArrayList<>();
-        Optional<Site> optSite = siteRepo.findFirstByUrl(site);
+        Optional<Site> optSite = siteRepo.findFirstByUrlAndPublishedTrue(site);
         if (site != null && optSite.isPresent()) {
             sites.add(optSite.get());
         } else {
-            sites = siteRepo.findAll();
+            sites = siteRepo.findAllByPublishedTrue();
         }
         return sites;
     }
 
 
-    private Data collectData(Page page, String content,
-                             List<Lemma> sortedLemmas) {
+    private Data collectData(PageText page, Site site, PageMatch match,
+                             float maxRelevance, Map<String, int[]> positions) {
         Data data = new Data();
-        data.setSite(page.getSite().getUrl());
-        data.setSiteName(page.getSite().getName());
+        data.setSite(site.getUrl());
+        data.setSiteName(site.getName());
         data.setUri(page.getPath());
-        data.setTitle(findTitle(content));
-        data.setRelevance(getRelevance(page));
-        String text = Jsoup.clean(content, Safelist.relaxed())
-                .replaceAll("&nbsp;", " ")
-                .replaceAll("<[^>]*>", " ")
-                .replaceAll("https?://[\\w\\W]\\S+", "")
-                .replaceAll("\\s*\\n+\\s*", " · ");
-        data.setSnippet(snippetCreator
-                .createSnippet(text, sortedLemmas));
-        return data;
-    }
-
-    private String findTitle(String content) {
-        String titleStart = "<title>";
-        String titleEnd = "</title>";
-        if (content.contains(titleStart)) {
-            int start = content.indexOf(titleStart)
-                    + titleStart.length();
-            int end = content.indexOf(titleEnd);
-            return content.substring(start, end);
+        if (page.getTitle() != null) {
+            data.setTitle(HtmlUtils.htmlEscape(page.getTitle()));
         }
-        return null;
-    }
-
-    private float getRelevance(Page page) {
-        if (maxRelevanceValue == null) {
-            maxRelevanceValue = indexRepo.getMaxValue();
+        data.setRelevance(maxRelevance > 0 ? match.relevance() / maxRelevance : 0);
+        if (page.getText() != null) {
+            data.setSnippet(snippetCreator.createSnippet(page.getText(),
+                    page.getTokenOffsets(), positions));
         }
-        return indexRepo.getRelevance(page,
-                maxRelevanceValue);
+        return data;
     }
 
-    private Set<Page> findPages(List<Lemma> sortedLemmas, String site) {
-        List<Site> sites = getSites(site);
-        List<Lemma> nonFrequentLemmas = pickNonFrequentLemmas(sortedLemmas);
-        Set<Page> pages = pageRepo
-                .findByLemmasAndSites(nonFrequentLemmas, sites);
-        for (Lemma sortedLemma : nonFrequentLemmas) {
-            Set<Page> foundPages = pageRepo
-                    .findByOneLemmaAndSitesAndPages(sortedLemma,
-                            sites, pages);
-            pages.clear();
-            pages.addAll(foundPages);
+    /**
+     * Lemmas the pages must contain. Lemmas found on more than the stop
+     * share of the searched pages only count for scoring, but the rarest
+     * lemma is always kept so that a query never loses all of them.
+     */
+    private List<String> pickRequiredLemmas(List<String> sortedLemmas,
+                                            Map<String, Integer> frequencies,
+                                            int pageCount) {
+        double maxLemmaFrequency = settings.getStopLemmaShare() * pageCount;
+        List<String> requiredLemmas = new ArrayList<>();
+        for (String lemma : sortedLemmas) {
+            if (requiredLemmas.isEmpty()
+                    || frequencies.get(lemma) <= maxLemmaFrequency) {
+                requiredLemmas.add(lemma);
+            }
         }
-        return pages;
+        return requiredLemmas;
     }
-    private List<Lemma> pickNonFrequentLemmas(List<Lemma> sortedLemmas){
-        int maxLemmaFrequency = 250;
-        List<Lemma> lowFrequencyLemmas = new ArrayList<>();
-        for (Lemma lemma : sortedLemmas) {
-            if (lemma.getFrequency() < maxLemmaFrequency) {
-                lowFrequencyLemmas.add(lemma);
-            }
+
+    private record PreparedSearch(Response response, List<String> lemmas,
+                                  List<PageMatch> window, float maxRelevance,
+                                  Map<Integer, Site> sites) {
+        private PreparedSearch(Response response) {
+            this(response, List.of(), List.of(), 0, Map.of());
         }
-        return lowFrequencyLemmas;
     }
-}
\ No newline at end of file
+}
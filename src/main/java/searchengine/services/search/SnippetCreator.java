@@ -1,103 +1,129 @@
 package searchengine.services.search;
 
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
-import searchengine.model.Lemma;
-import searchengine.services.morphology.LemmaFinder;
+import org.springframework.web.util.HtmlUtils;
+import searchengine.services.index.Positions;
 
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
+/**
+ * Builds a snippet from the stored page text and the token positions of
+ * the query lemmas. The window of text that holds the most distinct query
+ * lemmas is found by sliding over the positions, only that part of the
+ * text is read and the tokens at the positions are highlighted. The text
+ * is escaped, the highlighting tags are the only markup in a snippet.
+ */
 @Service
-@RequiredArgsConstructor
 public class SnippetCreator {
-    private final LemmaFinder lemmaFinder;
     private final String START_TAG = "<b>";
     private final String END_TAG = "</b>";
     private final int SNIPPET_LENGTH = 240;
 
-
-    public String createSnippet(String text, List<Lemma> sortedLemmas) {
+    public String createSnippet(String text, byte[] tokenOffsets,
+                                Map<String, int[]> lemmaPositions) {
         String threeDots = " ...";
-        Map<String, Set<String>> lemmasAndForms =
-                lemmaFinder.collectLemmasAndWords(text);
-        String[] words = text.split(" ");
-        StringBuilder formattedText = new StringBuilder();
-        for (String word : words) {
-            for (Lemma lemma : sortedLemmas) {
-                word = formatWordIfIsInQuery(word,
-                        lemma.getLemma(),
-                        lemmasAndForms);
+        List<Hit> hits = findHits(text, tokenOffsets, lemmaPositions);
+        if (hits.isEmpty()) {
+            return HtmlUtils.htmlEscape(cut(text, 0, SNIPPET_LENGTH))
+                    .concat(threeDots);
+        }
+        int[] window = findBestWindow(hits);
+        int from = findStart(text, hits.get(window[0]).start());
+        int to = Math.max(Math.min(from + SNIPPET_LENGTH, text.length()),
+                hits.get(window[1]).end());
+        StringBuilder snippet = new StringBuilder();
+        int position = from;
+        for (Hit hit : hits) {
+            if (hit.start() < from || hit.end() > to) {
+                continue;
             }
-            formattedText.append(word).append(" ");
+            snippet.append(escape(text, position, hit.start())).append(START_TAG)
+                    .append(escape(text, hit.start(), hit.end())).append(END_TAG);
+            position = hit.end();
         }
-        return cutSnippet(formattedText.toString()).concat(threeDots);
+        snippet.append(HtmlUtils.htmlEscape(cut(text, position, to - position)));
+        return snippet.toString().concat(threeDots);
     }
 
+    private List<Hit> findHits(String text, byte[] tokenOffsets,
+                               Map<String, int[]> lemmaPositions) {
+        List<Hit> hits = new ArrayList<>();
+        int tokenCount = Positions.offsetCount(tokenOffsets);
+        int lemmaIndex = 0;
+        for (int[] positions : lemmaPositions.values()) {
+            for (int position : positions) {
+                if (position < tokenCount) {
+                    int start = Positions.offsetAt(tokenOffsets, position);
+                    hits.add(new Hit(start, wordEnd(text, start), lemmaIndex));
+                }
+            }
+            lemmaIndex++;
+        }
+        hits.sort(Comparator.comparingInt(Hit::start));
+        return hits;
+    }
 
-    private String formatWordIfIsInQuery(String word, String lemma,
-                                         Map<String, Set<String>> lemmasAndWords) {
-        String[] formattedWord = word
-                .replaceAll("([^А-Яа-яЁё\\-])", " ")
-                .trim().split("[- ]");
-        for (String part : formattedWord) {
-            if (lemmasAndWords.get(lemma) == null) {
-                return word;
+    private int[] findBestWindow(List<Hit> hits) {
+        Map<Integer, Integer> lemmasInWindow = new HashMap<>();
+        int[] best = {0, 0};
+        int bestLemmas = 0;
+        int bestHits = 0;
+        int left = 0;
+        for (int right = 0; right < hits.size(); right++) {
+            lemmasInWindow.merge(hits.get(right).lemma(), 1, Integer::sum);
+            while (hits.get(right).end() - hits.get(left).start() > SNIPPET_LENGTH) {
+                lemmasInWindow.merge(hits.get(left).lemma(), -1, Integer::sum);
+                lemmasInWindow.remove(hits.get(left).lemma(), 0);
+                left++;
             }
-            if ((lemmasAndWords.get(lemma).stream().anyMatch(part
-                    .replaceAll("Ё", "Е")
-                    .replaceAll("ё", "е")
-                    ::equalsIgnoreCase))) {
-                word = word.replace(part, START_TAG
-                        .concat(part).concat(END_TAG));
+            int windowHits = right - left + 1;
+            if (lemmasInWindow.size() > bestLemmas || (lemmasInWindow.size()
+                    == bestLemmas && windowHits > bestHits)) {
+                bestLemmas = lemmasInWindow.size();
+                bestHits = windowHits;
+                best = new int[]{left, right};
             }
         }
-        return word;
+        return best;
     }
 
+    private int findStart(String text, int firstHit) {
+        int leftSpace = SNIPPET_LENGTH / 6;
+        if (firstHit <= leftSpace) {
+            return 0;
+        }
+        int space = text.indexOf(' ', firstHit - leftSpace);
+        return space >= 0 && space < firstHit ? space + 1 : firstHit;
+    }
 
-    private String cutSnippet(String formattedText) {
-        int tagsLength = START_TAG.length() + END_TAG.length();
-        String tagsRegex = "</?b>";
-        int substringStart = findStartIndexInText(formattedText);
-        String textFromStartIndex = formattedText.substring(substringStart,
-                formattedText.length() - 1);
-        int tagsCount = StringUtils.countOccurrencesOf(textFromStartIndex, START_TAG);
-        String unformattedSnippet = textFromStartIndex
-                .replaceAll(tagsRegex, "")
-                .substring(0, SNIPPET_LENGTH);
-        String snippet = "";
-        for (int i = tagsCount; i >= 1; i--) {
-            int endOfSnippet = textFromStartIndex.indexOf(" ",
-                    SNIPPET_LENGTH + i * tagsLength);
-            snippet = textFromStartIndex.substring(0, endOfSnippet);
-            if (snippet.replaceAll(tagsRegex, "")
-                    .length() < unformattedSnippet.length()) {
-                break;
-            }
+    private int wordEnd(String text, int start) {
+        int end = start;
+        while (end < text.length() && isRussianLetter(text.charAt(end))) {
+            end++;
         }
-        return snippet;
+        return end;
     }
 
-    private int findStartIndexInText(String formattedText) {
-        String[] sentences = formattedText.substring(formattedText
-                        .indexOf(START_TAG), formattedText.lastIndexOf(END_TAG))
-                .split("(?<=[.!?·])\\s*(?=(<b>|\"|«|· )?[А-ЯЁ])");
-        String maxSentence = "";
-        int maxValue = 0;
-        for (String sentence : sentences) {
-            int boldWordsCount = StringUtils
-                    .countOccurrencesOf(sentence, START_TAG);
-            if (boldWordsCount > maxValue) {
-                maxValue = boldWordsCount;
-                maxSentence = sentence;
-            }
+    private boolean isRussianLetter(char c) {
+        return (c >= 'А' && c <= 'я') || c == 'ё' || c == 'Ё';
+    }
+
+    private String escape(String text, int from, int to) {
+        return HtmlUtils.htmlEscape(text.substring(from, to));
+    }
+
+    private String cut(String text, int from, int length) {
+        if (from >= text.length()) {
+            return "";
         }
-        int startIndex = formattedText.indexOf(START_TAG, formattedText.indexOf(maxSentence));
-        int leftSpace = SNIPPET_LENGTH / 6;
-        return formattedText.indexOf(" ", startIndex > leftSpace
-                ? startIndex - leftSpace : startIndex);
+        int to = Math.min(from + length, text.length());
+        if (to < text.length()) {
+            int space = text.lastIndexOf(' ', to);
+            to = space > from ? space : to;
+        }
+        return text.substring(from, to);
+    }
+
+    private record Hit(int start, int end, int lemma) {
     }
 }
@@ -1,7 +1,10 @@
 package searchengine.services.statistics;
 
+import searchengine.dto.statistics.CacheStatisticsResponse;
 import searchengine.dto.statistics.StatisticsResponse;
 
 public interface StatisticsService {
     StatisticsResponse getStatistics();
+
+    CacheStatisticsResponse getCacheStatistics();
 }
@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import searchengine.config.SiteConfig;
 import searchengine.config.SitesList;
+import searchengine.dto.statistics.CacheStatisticsResponse;
 import searchengine.dto.statistics.DetailedStatisticsItem;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
@@ -15,6 +16,8 @@ import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 import searchengine.services.indexation.EntitySaver;
 import searchengine.services.indexation.IndexationService;
+import searchengine.services.morphology.LemmaFinderImpl;
+import searchengine.services.search.ResultCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -29,6 +32,8 @@ public class StatisticsServiceImpl implements StatisticsService {
     private final SiteRepository siteRepo;
     private final PageRepository pageRepo;
     private final LemmaRepository lemmaRepo;
+    private final ResultCache resultCache;
+    private final LemmaFinderImpl lemmaFinder;
 
     @Override
     public StatisticsResponse getStatistics() {
@@ -40,16 +45,25 @@ public class StatisticsServiceImpl implements StatisticsService {
         for (SiteConfig value : sitesList) {
             String url = value.getUrl();
             url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
-            Optional<searchengine.model.Site> optSite = siteRepo.findFirstByUrl(url);
+            Optional<searchengine.model.Site> optSite = siteRepo.findFirstByUrlOrderByIdDesc(url);
             if (optSite.isEmpty()) {
                 entitySaver.saveSite(value, Status.INDEXED);
             }
-            Optional<Site> site = siteRepo.findFirstByUrl(url);
+            Optional<Site> site = siteRepo.findFirstByUrlOrderByIdDesc(url);
             site.ifPresent(s -> detailed.add(createItem(s, total)));
         }
         return createResponse(total, detailed);
     }
 
+    @Override
+    public CacheStatisticsResponse getCacheStatistics() {
+        CacheStatisticsResponse response = new CacheStatisticsResponse();
+        response.setCaches(new ArrayList<>(List.of(resultCache.getStatistics(),
+                lemmaFinder.getCacheStatistics())));
+        response.setResult(true);
+        return response;
+    }
+
     private StatisticsResponse createResponse(TotalStatistics total,
                                               List<DetailedStatisticsItem> detailed) {
         StatisticsResponse response = new StatisticsResponse();
@@ -0,0 +1,202 @@
+package searchengine.services.suggest;
+
+import java.util.*;
+
+/**
+ * Immutable lemma dictionary for prefix lookups. Lemmas are sorted and
+ * packed into one char array with an offset per lemma, so the lemmas of a
+ * prefix are a range found by binary search. The best lemmas of every
+ * prefix up to {@value #PRECOMPUTED_PREFIX_LENGTH} letters are computed
+ * once when the dictionary is built, the ranges of longer prefixes are
+ * small and are scanned with a bounded heap.
+ */
+public class SuggestIndex {
+    public static final int MAX_SUGGESTIONS = 10;
+    private static final int PRECOMPUTED_PREFIX_LENGTH = 3;
+    private final char[] chars;
+    private final int[] offsets;
+    private final int[] weights;
+    private final Map<String, int[]> bestByPrefix = new HashMap<>();
+
+    public SuggestIndex(Map<String, Integer> frequencies) {
+        String[] lemmas = frequencies.keySet().toArray(new String[0]);
+        Arrays.sort(lemmas);
+        offsets = new int[lemmas.length + 1];
+        weights = new int[lemmas.length];
+        int length = 0;
+        for (int i = 0; i < lemmas.length; i++) {
+            offsets[i] = length;
+            weights[i] = frequencies.get(lemmas[i]);
+            length += lemmas[i].length();
+        }
+        offsets[lemmas.length] = length;
+        chars = new char[length];
+        for (int i = 0; i < lemmas.length; i++) {
+            lemmas[i].getChars(0, lemmas[i].length(), chars, offsets[i]);
+        }
+        for (int prefixLength = 1; prefixLength <= PRECOMPUTED_PREFIX_LENGTH;
+             prefixLength++) {
+            precompute(lemmas, prefixLength);
+        }
+    }
+
+    public int size() {
+        return weights.length;
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        if (prefix.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        int[] best = bestByPrefix.get(prefix);
+        if (best == null && prefix.length() > PRECOMPUTED_PREFIX_LENGTH) {
+            best = findBest(lowerBound(prefix), upperBound(prefix));
+        }
+        List<String> suggestions = new ArrayList<>();
+        for (int i = 0; best != null && i < best.length
+                && suggestions.size() < limit; i++) {
+            suggestions.add(lemma(best[i]));
+        }
+        return suggestions;
+    }
+
+    private void precompute(String[] lemmas, int prefixLength) {
+        int from = 0;
+        while (from < lemmas.length) {
+            if (lemmas[from].length() < prefixLength) {
+                from++;
+                continue;
+            }
+            String prefix = lemmas[from].substring(0, prefixLength);
+            int to = from + 1;
+            while (to < lemmas.length && lemmas[to].startsWith(prefix)) {
+                to++;
+            }
+            bestByPrefix.put(prefix, findBest(from, to));
+            from = to;
+        }
+    }
+
+    /**
+     * Best lemmas of the range, best first. A min-heap of lemma indexes
+     * with the worst kept lemma on top is sorted in place and returned,
+     * so a lookup allocates nothing but its result.
+     */
+    private int[] findBest(int from, int to) {
+        int[] heap = new int[Math.min(MAX_SUGGESTIONS, to - from)];
+        int size = 0;
+        for (int i = from; i < to; i++) {
+            if (size < heap.length) {
+                heap[size] = i;
+                siftUp(heap, size++);
+            } else if (isBetter(i, heap[0])) {
+                heap[0] = i;
+                siftDown(heap, size);
+            }
+        }
+        while (size > 1) {
+            int worst = heap[0];
+            heap[0] = heap[--size];
+            heap[size] = worst;
+            siftDown(heap, size);
+        }
+        return heap;
+    }
+
+    private boolean isBetter(int a, int b) {
+        return weights[a] > weights[b] || (weights[a] == weights[b] && a < b);
+    }
+
+    private void siftUp(int[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!isBetter(heap[parent], heap[i])) {
+                return;
+            }
+            swap(heap, parent, i);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int i = 0;
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            if (left < size && isBetter(heap[worst], heap[left])) {
+                worst = left;
+            }
+            if (left + 1 < size && isBetter(heap[worst], heap[left + 1])) {
+                worst = left + 1;
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(heap, i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int[] heap, int i, int j) {
+        int value = heap[i];
+        heap[i] = heap[j];
+        heap[j] = value;
+    }
+
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = weights.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int upperBound(String prefix) {
+        int low = 0;
+        int high = weights.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, prefix) <= 0 || startsWith(middle, prefix)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int index, String value) {
+        int start = offsets[index];
+        int length = offsets[index + 1] - start;
+        for (int i = 0; i < Math.min(length, value.length()); i++) {
+            int difference = chars[start + i] - value.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - value.length();
+    }
+
+    private boolean startsWith(int index, String prefix) {
+        int start = offsets[index];
+        if (offsets[index + 1] - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (chars[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String lemma(int index) {
+        return new String(chars, offsets[index], offsets[index + 1] - offsets[index]);
+    }
+}
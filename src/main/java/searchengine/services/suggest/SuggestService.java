@@ -0,0 +1,9 @@
+package searchengine.services.suggest;
+
+import searchengine.dto.suggest.SuggestResponse;
+
+public interface SuggestService {
+    SuggestResponse suggestAndGetResponse(String query, Integer limit);
+
+    void rebuild();
+}
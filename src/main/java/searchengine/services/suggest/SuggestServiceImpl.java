@@ -0,0 +1,78 @@
+package searchengine.services.suggest;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import searchengine.dto.suggest.SuggestResponse;
+import searchengine.model.Site;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.index.InvertedIndex;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Completes the last word of a query with lemmas of the published sites,
+ * most frequent first. The dictionary is an immutable {@link SuggestIndex}
+ * that is built from the in-memory index at startup and after every
+ * publish, then swapped in with a single write.
+ */
+@Service
+@RequiredArgsConstructor
+public class SuggestServiceImpl implements SuggestService {
+    private final SiteRepository siteRepo;
+    private final InvertedIndex invertedIndex;
+    private volatile SuggestIndex index;
+
+    @PostConstruct
+    @Override
+    public void rebuild() {
+        Set<Integer> siteIds = siteRepo.findAllByPublishedTrue().stream()
+                .map(Site::getId).collect(Collectors.toSet());
+        index = new SuggestIndex(invertedIndex.collectFrequencies(siteIds));
+    }
+
+    @Override
+    public SuggestResponse suggestAndGetResponse(String query, Integer limit) {
+        SuggestResponse response = new SuggestResponse();
+        response.setResult(true);
+        response.setSuggestions(suggest(query == null ? "" : query,
+                limit == null ? SuggestIndex.MAX_SUGGESTIONS : limit));
+        return response;
+    }
+
+    private List<String> suggest(String query, int limit) {
+        int start = query.length();
+        while (start > 0 && !Character.isWhitespace(query.charAt(start - 1))) {
+            start--;
+        }
+        String prefix = normalize(query.substring(start));
+        List<String> suggestions = new ArrayList<>();
+        if (prefix == null) {
+            return suggestions;
+        }
+        String head = query.substring(0, start);
+        for (String lemma : index.suggest(prefix, Math.min(limit,
+                SuggestIndex.MAX_SUGGESTIONS))) {
+            suggestions.add(head + lemma);
+        }
+        return suggestions;
+    }
+
+    private String normalize(String word) {
+        StringBuilder prefix = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = Character.toLowerCase(word.charAt(i));
+            if (c == 'ё') {
+                c = 'е';
+            }
+            if (c < 'а' || c > 'я') {
+                return null;
+            }
+            prefix.append(c);
+        }
+        return prefix.length() == 0 ? null : prefix.toString();
+    }
+}
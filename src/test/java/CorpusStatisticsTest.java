@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.services.index.CorpusStatistics;
+import searchengine.services.index.InvertedIndex;
+import searchengine.services.index.PageMatch;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class CorpusStatisticsTest {
+    private static final int SITE_ID = 1;
+
+    @Test
+    @DisplayName("Счётчики страниц после добавления и удаления")
+    public void testCounts() {
+        InvertedIndex index = createIndex();
+        Assertions.assertEquals(3, index.countPages(Set.of(SITE_ID)));
+        Assertions.assertEquals(3, index.countPages("кот", Set.of(SITE_ID)));
+        Assertions.assertEquals(1, index.countPages("собака", Set.of(SITE_ID)));
+        Assertions.assertEquals(0, index.countPages("кот", Set.of(2)));
+
+        index.removePage(SITE_ID, 1, List.of("кот", "собака"));
+        Assertions.assertEquals(2, index.countPages(Set.of(SITE_ID)));
+        Assertions.assertEquals(2, index.countPages("кот", Set.of(SITE_ID)));
+        Assertions.assertEquals(0, index.countPages("собака", Set.of(SITE_ID)));
+        Assertions.assertEquals(Map.of("кот", 2, "мышь", 2),
+                index.collectFrequencies(Set.of(SITE_ID)));
+    }
+
+    @Test
+    @DisplayName("Оценка BM25 растёт с частотой и редкостью леммы")
+    public void testScore() {
+        InvertedIndex index = createIndex();
+        List<String> lemmas = List.of("кот", "собака");
+        CorpusStatistics.Scorer scorer = index.scorer(lemmas, Set.of(SITE_ID));
+        List<PageMatch> cats = index.findPages(SITE_ID, List.of("кот"),
+                List.of("кот"), scorer);
+        Assertions.assertEquals(3, cats.size());
+        Assertions.assertTrue(relevance(cats, 3) > relevance(cats, 2));
+
+        List<PageMatch> dogs = index.findPages(SITE_ID, List.of("собака"),
+                List.of("собака"), scorer);
+        Assertions.assertEquals(1, dogs.size());
+        Assertions.assertTrue(relevance(dogs, 1) > relevance(cats, 1));
+    }
+
+    private InvertedIndex createIndex() {
+        InvertedIndex index = new InvertedIndex(null);
+        index.addPage(1, SITE_ID, Map.of("кот", new int[]{0},
+                "собака", new int[]{1}));
+        index.addPage(2, SITE_ID, Map.of("кот", new int[]{0},
+                "мышь", new int[]{1, 2, 3}));
+        index.addPage(3, SITE_ID, Map.of("кот", new int[]{0, 1, 2},
+                "мышь", new int[]{3}));
+        return index;
+    }
+
+    private float relevance(List<PageMatch> matches, int pageId) {
+        return matches.stream().filter(match -> match.pageId() == pageId)
+                .findFirst().orElseThrow().relevance();
+    }
+}
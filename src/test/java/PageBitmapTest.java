@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.services.index.PageBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PageBitmapTest {
+
+    @Test
+    @DisplayName("Пересечение и объединение массивов и битовых карт")
+    public void testAndOr() {
+        PageBitmap even = new PageBitmap();
+        PageBitmap triple = new PageBitmap();
+        for (int id = 0; id < 10_000; id++) {
+            if (id % 2 == 0) {
+                even.add(id);
+            }
+            if (id % 3 == 0) {
+                triple.add(id);
+            }
+        }
+        even.add(70_000);
+        even.add(70_001);
+        triple.add(70_001);
+        triple.add(70_002);
+        Assertions.assertEquals(5_002, even.cardinality());
+        Assertions.assertEquals(3_336, triple.cardinality());
+
+        PageBitmap both = even.and(triple);
+        Assertions.assertEquals(1_668, both.cardinality());
+        Assertions.assertEquals(1_668, even.andCardinality(triple));
+        Assertions.assertTrue(both.contains(9_996));
+        Assertions.assertTrue(both.contains(70_001));
+        Assertions.assertFalse(both.contains(70_000));
+        Assertions.assertEquals(6_670, even.or(triple).cardinality());
+
+        List<Integer> ids = new ArrayList<>();
+        both.forEach(ids::add);
+        for (int i = 1; i < ids.size(); i++) {
+            Assertions.assertTrue(ids.get(i - 1) < ids.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Битовая карта снова становится массивом после удалений")
+    public void testRemove() {
+        PageBitmap even = new PageBitmap();
+        PageBitmap triple = new PageBitmap();
+        for (int id = 0; id < 10_000; id++) {
+            if (id % 2 == 0) {
+                even.add(id);
+            }
+            if (id % 3 == 0) {
+                triple.add(id);
+            }
+        }
+        for (int id = 2_000; id < 10_000; id += 2) {
+            even.remove(id);
+        }
+        Assertions.assertEquals(1_000, even.cardinality());
+        Assertions.assertTrue(even.contains(1_998));
+        Assertions.assertFalse(even.contains(2_000));
+        Assertions.assertEquals(334, even.and(triple).cardinality());
+        Assertions.assertEquals(334, triple.andCardinality(even));
+        Assertions.assertEquals(3_334 + 1_000 - 334, even.or(triple).cardinality());
+
+        for (int id = 0; id < 2_000; id += 2) {
+            even.remove(id);
+        }
+        Assertions.assertTrue(even.isEmpty());
+        Assertions.assertTrue(even.and(triple).isEmpty());
+    }
+}
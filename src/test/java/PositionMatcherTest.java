@@ -0,0 +1,42 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.services.search.PositionMatcher;
+import searchengine.services.search.SearchQuery;
+
+import java.util.List;
+import java.util.Map;
+
+public class PositionMatcherTest {
+
+    @Test
+    @DisplayName("Фраза с пропущенным служебным словом")
+    public void testPhraseWithStopWord() {
+        SearchQuery.Phrase phrase = new SearchQuery.Phrase(
+                List.of("квартира", "центр"), List.of(0, 2));
+        Assertions.assertTrue(PositionMatcher.containsPhrase(Map.of(
+                "квартира", new int[]{3, 10},
+                "центр", new int[]{7, 12}), phrase));
+        Assertions.assertFalse(PositionMatcher.containsPhrase(Map.of(
+                "квартира", new int[]{3, 10},
+                "центр", new int[]{4, 11}), phrase));
+        Assertions.assertFalse(PositionMatcher.containsPhrase(Map.of(
+                "квартира", new int[]{3, 10}), phrase));
+    }
+
+    @Test
+    @DisplayName("Близость слов запроса на странице")
+    public void testCloseness() {
+        List<String> lemmas = List.of("купить", "квартира");
+        Assertions.assertEquals(1f, PositionMatcher.closeness(Map.of(
+                "купить", new int[]{5, 40},
+                "квартира", new int[]{6, 90}), lemmas), 0.0001f);
+        Assertions.assertEquals(0.25f, PositionMatcher.closeness(Map.of(
+                "купить", new int[]{0, 50},
+                "квартира", new int[]{20, 54}), lemmas), 0.0001f);
+        Assertions.assertEquals(0f, PositionMatcher.closeness(Map.of(
+                "купить", new int[]{0}), lemmas), 0.0001f);
+        Assertions.assertEquals(1f, PositionMatcher.closeness(Map.of(),
+                List.of("купить")), 0.0001f);
+    }
+}
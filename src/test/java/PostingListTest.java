@@ -0,0 +1,69 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.services.index.Positions;
+import searchengine.services.index.PostingList;
+
+public class PostingListTest {
+
+    @Test
+    @DisplayName("Переход курсора к странице с позициями")
+    public void testAdvance() {
+        PostingList list = createList();
+        PostingList.Cursor cursor = list.cursor();
+        Assertions.assertTrue(cursor.advance(10));
+        Assertions.assertEquals(10, cursor.pageId());
+        Assertions.assertEquals(2, cursor.rank());
+        Assertions.assertArrayEquals(new int[]{4, 9}, cursor.positions());
+        Assertions.assertTrue(cursor.advance(11));
+        Assertions.assertEquals(300, cursor.pageId());
+        Assertions.assertArrayEquals(new int[]{1, 200, 5000}, cursor.positions());
+        Assertions.assertFalse(cursor.advance(100_001));
+    }
+
+    @Test
+    @DisplayName("Вставка страницы не по порядку")
+    public void testInsert() {
+        PostingList list = createList();
+        list.add(7, 1, Positions.encode(new int[]{42}));
+        PostingList.Cursor cursor = list.cursor();
+        int[] expected = {3, 7, 10, 300, 100_000};
+        for (int pageId : expected) {
+            Assertions.assertTrue(cursor.next());
+            Assertions.assertEquals(pageId, cursor.pageId());
+        }
+        Assertions.assertFalse(cursor.next());
+        cursor = list.cursor();
+        Assertions.assertTrue(cursor.advance(7));
+        Assertions.assertArrayEquals(new int[]{42}, cursor.positions());
+        Assertions.assertTrue(cursor.advance(300));
+        Assertions.assertArrayEquals(new int[]{1, 200, 5000}, cursor.positions());
+    }
+
+    @Test
+    @DisplayName("Сжатие убирает удалённые страницы и сохраняет позиции")
+    public void testCompact() {
+        PostingList compacted = createList().compact(pageId -> pageId != 10);
+        Assertions.assertEquals(3, compacted.size());
+        PostingList.Cursor cursor = compacted.cursor();
+        Assertions.assertTrue(cursor.next());
+        Assertions.assertEquals(3, cursor.pageId());
+        Assertions.assertArrayEquals(new int[]{0}, cursor.positions());
+        Assertions.assertTrue(cursor.next());
+        Assertions.assertEquals(300, cursor.pageId());
+        Assertions.assertEquals(3, cursor.rank());
+        Assertions.assertArrayEquals(new int[]{1, 200, 5000}, cursor.positions());
+        Assertions.assertTrue(cursor.next());
+        Assertions.assertEquals(100_000, cursor.pageId());
+        Assertions.assertFalse(cursor.next());
+    }
+
+    private PostingList createList() {
+        PostingList list = new PostingList();
+        list.add(3, 1, Positions.encode(new int[]{0}));
+        list.add(10, 2, Positions.encode(new int[]{4, 9}));
+        list.add(300, 3, Positions.encode(new int[]{1, 200, 5000}));
+        list.add(100_000, 1, Positions.encode(new int[]{17}));
+        return list;
+    }
+}
@@ -0,0 +1,65 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.config.SearchSettings;
+import searchengine.services.index.PageMatch;
+import searchengine.services.indexation.IndexEpoch;
+import searchengine.services.search.RankedPages;
+import searchengine.services.search.ResultCache;
+import searchengine.services.search.SearchQuery;
+
+import java.util.List;
+import java.util.Set;
+
+public class ResultCacheTest {
+    private final SearchQuery query = new SearchQuery(Set.of("кот"), List.of());
+    private final RankedPages pages = new RankedPages(List.of("кот"),
+            List.of(new PageMatch(1, 1, 2f), new PageMatch(5, 2, 1f)));
+
+    @Test
+    @DisplayName("Результат сбрасывается после изменения индекса сайта")
+    public void testEpochChange() {
+        IndexEpoch epoch = new IndexEpoch();
+        ResultCache cache = new ResultCache(new SearchSettings(), epoch);
+        Set<Integer> siteIds = Set.of(1, 2);
+        cache.put(query, null, epoch.snapshot(siteIds), pages);
+        Assertions.assertSame(pages, cache.get(query, null, siteIds));
+        epoch.advance(Set.of(3));
+        Assertions.assertSame(pages, cache.get(query, null, siteIds));
+        epoch.advance(Set.of(2));
+        Assertions.assertNull(cache.get(query, null, siteIds));
+        Assertions.assertNull(cache.get(query, null, siteIds));
+    }
+
+    @Test
+    @DisplayName("Результат сбрасывается после смены опубликованных сайтов")
+    public void testPublishedSitesChange() {
+        IndexEpoch epoch = new IndexEpoch();
+        ResultCache cache = new ResultCache(new SearchSettings(), epoch);
+        cache.put(query, null, epoch.snapshot(Set.of(1, 2)), pages);
+        Assertions.assertNull(cache.get(query, null, Set.of(1, 4)));
+        cache.put(query, "https://site.ru", epoch.snapshot(Set.of(1)), pages);
+        Assertions.assertNull(cache.get(query, null, Set.of(1)));
+        Assertions.assertSame(pages, cache.get(query, "https://site.ru", Set.of(1)));
+    }
+
+    @Test
+    @DisplayName("Устаревший и вытесненный результат не возвращается")
+    public void testExpiration() {
+        IndexEpoch epoch = new IndexEpoch();
+        SearchSettings settings = new SearchSettings();
+        settings.setResultCacheSize(1);
+        settings.setResultCacheTtl(0);
+        ResultCache cache = new ResultCache(settings, epoch);
+        cache.put(query, null, epoch.snapshot(Set.of(1)), pages);
+        Assertions.assertNull(cache.get(query, null, Set.of(1)));
+
+        settings.setResultCacheTtl(60_000);
+        SearchQuery other = new SearchQuery(Set.of("собака"), List.of());
+        cache.put(query, null, epoch.snapshot(Set.of(1)), pages);
+        cache.put(other, null, epoch.snapshot(Set.of(1)), pages);
+        Assertions.assertNull(cache.get(query, null, Set.of(1)));
+        Assertions.assertSame(pages, cache.get(other, null, Set.of(1)));
+        Assertions.assertEquals(1, cache.getStatistics().getSize());
+    }
+}
@@ -0,0 +1,25 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.services.morphology.RussianTokenizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RussianTokenizerTest {
+
+    @Test
+    @DisplayName("Разбиение текста на русские слова с позициями")
+    public void testTokenize() {
+        String text = "Ёжик, (в ТУМАНЕ) — 2023 year ещё!";
+        List<String> tokens = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        RussianTokenizer.tokenize(text, (token, start, end) -> {
+            tokens.add(token);
+            starts.add(start);
+            Assertions.assertEquals(token.length(), end - start);
+        });
+        Assertions.assertEquals(List.of("ежик", "в", "тумане", "еще"), tokens);
+        Assertions.assertEquals(List.of(0, 7, 9, 29), starts);
+    }
+}
@@ -0,0 +1,68 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.services.index.Positions;
+import searchengine.services.search.SnippetCreator;
+
+import java.util.Map;
+
+public class SnippetCreatorTest {
+    private final SnippetCreator snippetCreator = new SnippetCreator();
+
+    @Test
+    @DisplayName("Окно с наибольшим числом слов запроса")
+    public void testBestWindow() {
+        String text = "кот " + "слово ".repeat(60) + "собака "
+                + "слово ".repeat(60) + "кот собака " + "слово ".repeat(10);
+        String snippet = snippetCreator.createSnippet(text, offsetsOf(text),
+                Map.of("кот", new int[]{0, 122}, "собака", new int[]{61, 123}));
+        Assertions.assertTrue(snippet.contains("<b>кот</b> <b>собака</b>"));
+        Assertions.assertEquals(2, snippet.split("<b>", -1).length - 1);
+        Assertions.assertFalse(snippet.startsWith("<b>кот</b>"));
+        Assertions.assertTrue(snippet.endsWith(" ..."));
+    }
+
+    @Test
+    @DisplayName("Подсветка слова с окончанием в начале текста")
+    public void testHighlight() {
+        String text = "Кошки спят на диване весь день";
+        String snippet = snippetCreator.createSnippet(text, offsetsOf(text),
+                Map.of("кошка", new int[]{0}, "диван", new int[]{3}));
+        Assertions.assertEquals("<b>Кошки</b> спят на <b>диване</b> весь день ...",
+                snippet);
+    }
+
+    @Test
+    @DisplayName("Начало текста, если слов запроса нет")
+    public void testNoHits() {
+        String text = "слово ".repeat(100);
+        String snippet = snippetCreator.createSnippet(text, offsetsOf(text), Map.of());
+        Assertions.assertTrue(snippet.startsWith("слово слово"));
+        Assertions.assertFalse(snippet.contains("<b>"));
+        Assertions.assertTrue(snippet.length() <= 240 + " ...".length());
+    }
+
+    @Test
+    @DisplayName("Разметка из текста страницы экранируется")
+    public void testEscaping() {
+        String text = "кот <img src=x onerror=alert(1)> & собака";
+        String snippet = snippetCreator.createSnippet(text, offsetsOf(text),
+                Map.of("кот", new int[]{0}, "собака", new int[]{5}));
+        Assertions.assertEquals("<b>кот</b> &lt;img src=x onerror=alert(1)&gt; "
+                + "&amp; <b>собака</b> ...", snippet);
+        String plain = "<script>alert(1)</script>";
+        Assertions.assertEquals("&lt;script&gt;alert(1)&lt;/script&gt; ...",
+                snippetCreator.createSnippet(plain, offsetsOf(plain), Map.of()));
+    }
+
+    private byte[] offsetsOf(String text) {
+        int[] offsets = new int[text.length()];
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != ' ' && (i == 0 || text.charAt(i - 1) == ' ')) {
+                offsets[count++] = i;
+            }
+        }
+        return Positions.encodeOffsets(offsets, count);
+    }
+}
@@ -0,0 +1,29 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.services.suggest.SuggestIndex;
+
+import java.util.List;
+import java.util.Map;
+
+public class SuggestIndexTest {
+    private final SuggestIndex index = new SuggestIndex(Map.of(
+            "дом", 5, "домик", 2, "домашний", 7, "дорога", 9,
+            "домофон", 2, "кот", 3));
+
+    @Test
+    @DisplayName("Подсказки по короткому префиксу в порядке частоты")
+    public void testShortPrefix() {
+        Assertions.assertEquals(List.of("дорога", "домашний", "дом"),
+                index.suggest("до", 3));
+    }
+
+    @Test
+    @DisplayName("Подсказки по длинному префиксу, при равной частоте по алфавиту")
+    public void testLongPrefix() {
+        Assertions.assertEquals(List.of("домашний", "дом", "домик", "домофон"),
+                index.suggest("дом", 10));
+        Assertions.assertEquals(List.of("домофон"), index.suggest("домоф", 10));
+        Assertions.assertTrue(index.suggest("домофоны", 10).isEmpty());
+    }
+}